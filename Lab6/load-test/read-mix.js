@@ -0,0 +1,43 @@
+// k6 load test: 1000 concurrent clients on the read endpoints.
+//
+// Run once per mode against the same database and compare http_reqs/s and the latency percentiles:
+//   ./gradlew bootRun                                              # platform-thread Tomcat pool
+//   ./gradlew bootRun --args='--spring.profiles.active=virtual-threads'
+//   k6 run -e BASE_URL=http://localhost:8080 load-test/read-mix.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+
+export const options = {
+    scenarios: {
+        readers: {
+            executor: 'constant-vus',
+            vus: 1000,
+            duration: __ENV.DURATION || '2m',
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+export function setup() {
+    const topics = http.get(`${BASE_URL}/api/v1/topics`).json();
+    return { topicIds: topics.map((t) => t.id) };
+}
+
+export default function (data) {
+    const topicId = data.topicIds[Math.floor(Math.random() * data.topicIds.length)];
+    const roll = Math.random();
+    let res;
+    if (roll < 0.5) {
+        res = http.get(`${BASE_URL}/api/v1/topics/${topicId}`, { tags: { name: 'topic' } });
+    } else if (roll < 0.9) {
+        res = http.get(`${BASE_URL}/api/v1/posts?topicId=${topicId}&cursor=&size=20`, { tags: { name: 'posts' } });
+    } else {
+        res = http.get(`${BASE_URL}/api/v1/posts?size=20&sort=likes,desc`, { tags: { name: 'ranked' } });
+    }
+    check(res, { 'status is 200': (r) => r.status === 200 });
+}
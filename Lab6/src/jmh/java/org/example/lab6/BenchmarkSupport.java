@@ -0,0 +1,103 @@
+package org.example.lab6;
+
+import org.example.lab6.entity.Post;
+import org.example.lab6.entity.Topic;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Shared setup for the Spring-backed benchmarks; they run against the docker-compose PostgreSQL
+public final class BenchmarkSupport {
+
+    public static final String[] WORDS = {
+            "spring", "java", "postgres", "index", "cache", "stream", "record", "lambda", "thread", "query"
+    };
+    private static final int AUTHORS = 500;
+    private static final UUID[] AUTHOR_IDS = IntStream.range(0, AUTHORS)
+            .mapToObj(i -> UUID.randomUUID())
+            .toArray(UUID[]::new);
+
+    private BenchmarkSupport() {
+    }
+
+    // the fake profile adds the in-memory repositories next to the JPA and JDBC ones;
+    // caching is off so service benchmarks keep measuring the repositories behind them
+    public static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(Lab6Application.class)
+                .profiles("fake")
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "spring.sql.init.mode=never",
+                        "spring.cache.type=none",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+    public static void resetSchema(ApplicationContext context) {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"))
+                .execute(context.getBean(DataSource.class));
+    }
+
+    public static Topic topic(int i, int tagCount, int descriptionSize) {
+        Topic t = new Topic();
+        t.setTitle("Topic " + i + " about " + WORDS[i % WORDS.length]);
+        t.setDescription(text(descriptionSize));
+        t.setAuthor("author" + (i % AUTHORS));
+        t.setViewCount(0);
+        t.setReplyCount(0);
+        t.setPinned(i % 20 == 0);
+        t.setClosed(false);
+        t.setDeleted(false);
+        Set<String> tags = new LinkedHashSet<>();
+        for (int k = 0; k < tagCount; k++) {
+            tags.add("tag" + k);
+        }
+        t.setTags(tags);
+        return t;
+    }
+
+    public static Post post(int i, UUID topicId) {
+        Post p = new Post();
+        p.setAuthorId(AUTHOR_IDS[i % AUTHORS]);
+        p.setTopicId(topicId);
+        p.setTitle("Post " + i + " on " + WORDS[i % WORDS.length] + " and " + WORDS[(i / WORDS.length) % WORDS.length]);
+        p.setContent(text(200));
+        p.setLikes(i % 100);
+        p.setCreatedAt(LocalDateTime.now().minusSeconds(i));
+        p.setUpdatedAt(p.getCreatedAt());
+        return p;
+    }
+
+    public static Stream<Post> posts(int count, UUID[] topicIds) {
+        return IntStream.range(0, count).mapToObj(i -> post(i, topicIds[i % topicIds.length]));
+    }
+
+    public static <T> T pick(T[] values) {
+        return values[ThreadLocalRandom.current().nextInt(values.length)];
+    }
+
+    private static String text(int size) {
+        StringBuilder sb = new StringBuilder(size + 16);
+        int i = 0;
+        while (sb.length() < size) {
+            sb.append(WORDS[i++ % WORDS.length]).append(' ');
+        }
+        sb.setLength(size);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package org.example.lab6.repository;
+
+import org.example.lab6.entity.Topic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Compare gc.alloc.rate.norm (bytes per op) between the snapshot store and the old deep-copy store
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FakeTopicRepositoryBenchmark {
+
+    @Param({"1000", "10000"})
+    int topics;
+
+    private FakeTopicRepository snapshots;
+    private DeepCopyStore deepCopy;
+    private Topic edited;
+
+    @Setup
+    public void setUp() {
+        snapshots = new FakeTopicRepository(new FakePostRepository());
+        deepCopy = new DeepCopyStore();
+        for (int i = 0; i < topics; i++) {
+            Topic t = topic(i);
+            snapshots.save(t);
+            deepCopy.save(t);
+        }
+        edited = snapshots.findAll().get(0);
+        deepCopy.update(edited);
+    }
+
+    @Benchmark
+    public List<Topic> findAllSnapshots() {
+        return snapshots.findAll();
+    }
+
+    @Benchmark
+    public List<Topic> findAllDeepCopy() {
+        return deepCopy.findAll();
+    }
+
+    @Benchmark
+    public Topic updateSnapshots() {
+        // keep the returned version, or the next call is rejected as stale
+        edited = snapshots.update(edited);
+        return edited;
+    }
+
+    @Benchmark
+    public Topic updateDeepCopy() {
+        return deepCopy.update(edited);
+    }
+
+    private static Topic topic(int i) {
+        Topic t = new Topic();
+        t.setTitle("Topic " + i);
+        t.setDescription("Description of topic " + i);
+        t.setAuthor("author" + (i % 50));
+        t.setViewCount(i);
+        t.setReplyCount(i % 17);
+        t.setPinned(i % 10 == 0);
+        t.setClosed(false);
+        t.setDeleted(false);
+        t.setTags(Set.of("java", "spring", "tag" + (i % 20)));
+        t.setCreatedAt(LocalDateTime.now());
+        return t;
+    }
+
+    // the store as it was before snapshots: a deep copy on every read and two on every write
+    static final class DeepCopyStore {
+        private final Map<UUID, Topic> storage = new ConcurrentHashMap<>();
+
+        void save(Topic topic) {
+            Topic toSave = copy(topic);
+            toSave.setId(UUID.randomUUID());
+            toSave.setUpdatedAt(LocalDateTime.now());
+            storage.put(toSave.getId(), copy(toSave));
+        }
+
+        Topic update(Topic topic) {
+            Topic toUpdate = copy(topic);
+            Topic old = storage.get(toUpdate.getId());
+            if (old != null) {
+                toUpdate.setViewCount(old.getViewCount());
+                toUpdate.setReplyCount(old.getReplyCount());
+                toUpdate.setLastPostAt(old.getLastPostAt());
+            }
+            toUpdate.setUpdatedAt(LocalDateTime.now());
+            storage.put(toUpdate.getId(), copy(toUpdate));
+            return copy(toUpdate);
+        }
+
+        List<Topic> findAll() {
+            return copyList(storage.values());
+        }
+
+        private static List<Topic> copyList(Collection<Topic> list) {
+            return list.stream().map(DeepCopyStore::copy).collect(Collectors.toUnmodifiableList());
+        }
+
+        private static Topic copy(Topic t) {
+            Topic c = new Topic();
+            c.setId(t.getId());
+            c.setTitle(t.getTitle());
+            c.setDescription(t.getDescription());
+            c.setAuthor(t.getAuthor());
+            c.setViewCount(t.getViewCount());
+            c.setReplyCount(t.getReplyCount());
+            c.setPinned(t.getPinned());
+            c.setClosed(t.getClosed());
+            c.setTags(t.getTags() == null ? null : Set.copyOf(t.getTags()));
+            c.setDeleted(t.getDeleted());
+            c.setLastPostAt(t.getLastPostAt());
+            c.setCreatedAt(t.getCreatedAt());
+            c.setUpdatedAt(t.getUpdatedAt());
+            return c;
+        }
+    }
+}
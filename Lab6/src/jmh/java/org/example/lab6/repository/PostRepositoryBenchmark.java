@@ -0,0 +1,130 @@
+package org.example.lab6.repository;
+
+import org.example.lab6.BenchmarkSupport;
+import org.example.lab6.entity.Post;
+import org.example.lab6.entity.Topic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Throughput and latency percentiles per implementation; add the gc profiler output for allocation rate.
+// The database is reseeded only when the row count differs from the requested size.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PostRepositoryBenchmark {
+
+    private static final int TOPICS = 1000;
+    private static final int SAMPLED_IDS = 10_000;
+
+    @Param({"jpa", "jdbc", "fake"})
+    String impl;
+
+    @Param({"10000", "100000", "1000000"})
+    int rows;
+
+    private ConfigurableApplicationContext context;
+    private PostRepository repository;
+    private UUID[] postIds;
+    private UUID[] topicIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.start();
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        repository = switch (impl) {
+            case "jpa" -> context.getBean(PostJpaRepository.class);
+            case "jdbc" -> context.getBean(PostJdbcClientRepository.class);
+            case "fake" -> context.getBean(FakePostRepository.class);
+            default -> throw new IllegalArgumentException("Unknown implementation " + impl);
+        };
+
+        if ("fake".equals(impl)) {
+            topicIds = IntStream.range(0, TOPICS).mapToObj(i -> UUID.randomUUID()).toArray(UUID[]::new);
+            repository.importPosts(BenchmarkSupport.posts(rows, topicIds));
+            postIds = repository.streamAll().limit(SAMPLED_IDS).map(Post::getId).toArray(UUID[]::new);
+            return;
+        }
+
+        if (postCount(jdbc) != rows) {
+            BenchmarkSupport.resetSchema(context);
+            List<Topic> topics = context.getBean(TopicJdbcTemplateRepository.class).saveAll(
+                    IntStream.range(0, TOPICS).mapToObj(i -> BenchmarkSupport.topic(i, 3, 200)).toList());
+            UUID[] seededTopics = topics.stream().map(Topic::getId).toArray(UUID[]::new);
+            context.getBean(PostJdbcClientRepository.class).importPosts(BenchmarkSupport.posts(rows, seededTopics));
+            jdbc.execute("ANALYZE");
+        }
+        topicIds = jdbc.queryForList("SELECT id FROM topics", UUID.class).toArray(UUID[]::new);
+        postIds = jdbc.queryForList("SELECT id FROM posts ORDER BY random() LIMIT " + SAMPLED_IDS, UUID.class)
+                .toArray(UUID[]::new);
+    }
+
+    private static long postCount(JdbcTemplate jdbc) {
+        try {
+            Long count = jdbc.queryForObject("SELECT count(*) FROM posts", Long.class);
+            return count != null ? count : -1;
+        } catch (BadSqlGrammarException e) {
+            return -1;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Post> findById() {
+        return repository.findById(BenchmarkSupport.pick(postIds));
+    }
+
+    @Benchmark
+    public List<Post> findByTopicId() {
+        return repository.findByTopicId(BenchmarkSupport.pick(topicIds));
+    }
+
+    @Benchmark
+    public List<Post> findByTitleContaining() {
+        return repository.findByTitleContaining(BenchmarkSupport.pick(BenchmarkSupport.WORDS) + " and");
+    }
+
+    // same words as findByTitleContaining, but through the tsvector index and including content
+    @Benchmark
+    public List<PostSearchHit> search() {
+        return repository.search(BenchmarkSupport.pick(BenchmarkSupport.WORDS), 0, 20);
+    }
+
+    @Benchmark
+    public Post save() {
+        Post post = BenchmarkSupport.post(ThreadLocalRandom.current().nextInt(rows), BenchmarkSupport.pick(topicIds));
+        return repository.save(post);
+    }
+
+    @Benchmark
+    public boolean incrementLikes() {
+        return repository.incrementLikes(BenchmarkSupport.pick(postIds));
+    }
+
+    @Benchmark
+    public boolean update() {
+        int n = ThreadLocalRandom.current().nextInt(rows);
+        return repository.update(BenchmarkSupport.pick(postIds), "Edited post " + n, "Edited content " + n);
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.lab6.repository;
+
+import org.example.lab6.BenchmarkSupport;
+import org.example.lab6.entity.Topic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Upsert (ON CONFLICT ... RETURNING vs Hibernate merge), text[] decoding and bulk delete per implementation,
+// parameterized by payload shape. Runs against the docker-compose PostgreSQL; the schema is recreated per trial.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TopicRepositoryBenchmark {
+
+    private static final int TOPICS = 1000;
+    private static final int DELETE_BATCH = 20;
+
+    @Param({"jpa", "jdbc", "fake"})
+    String impl;
+
+    @Param({"0", "5", "50"})
+    int tagCount;
+
+    @Param({"100", "10000"})
+    int descriptionSize;
+
+    private ConfigurableApplicationContext context;
+    private TopicRepository repository;
+    private Topic[] topics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.start();
+        repository = switch (impl) {
+            case "jpa" -> context.getBean(TopicJpaRepository.class);
+            case "jdbc" -> context.getBean(TopicJdbcTemplateRepository.class);
+            case "fake" -> context.getBean(FakeTopicRepository.class);
+            default -> throw new IllegalArgumentException("Unknown implementation " + impl);
+        };
+        if (!"fake".equals(impl)) {
+            BenchmarkSupport.resetSchema(context);
+        }
+        topics = repository.saveAll(IntStream.range(0, TOPICS)
+                        .mapToObj(i -> BenchmarkSupport.topic(i, tagCount, descriptionSize))
+                        .toList())
+                .toArray(Topic[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // a fresh batch per call; Level.Invocation is acceptable here because one delete is far above timer resolution
+    @State(Scope.Thread)
+    public static class DeleteBatch {
+        List<UUID> ids;
+
+        @Setup(Level.Invocation)
+        public void insert(TopicRepositoryBenchmark bench) {
+            int base = ThreadLocalRandom.current().nextInt(TOPICS);
+            ids = bench.repository.saveAll(IntStream.range(0, DELETE_BATCH)
+                            .mapToObj(i -> BenchmarkSupport.topic(base + i, bench.tagCount, bench.descriptionSize))
+                            .toList())
+                    .stream()
+                    .map(Topic::getId)
+                    .toList();
+        }
+    }
+
+    @Benchmark
+    public Topic upsertExisting() {
+        int i = ThreadLocalRandom.current().nextInt(topics.length);
+        Topic topic = topics[i];
+        topic.setTitle("Edited " + ThreadLocalRandom.current().nextInt());
+        // the saved row carries the bumped version; the next edit of this topic must send it
+        topics[i] = repository.save(topic);
+        return topics[i];
+    }
+
+    @Benchmark
+    public Topic insertNew() {
+        return repository.save(BenchmarkSupport.topic(ThreadLocalRandom.current().nextInt(TOPICS), tagCount, descriptionSize));
+    }
+
+    // ~5% of the topics are pinned, so this mostly measures row mapping including the tags array
+    @Benchmark
+    public List<Topic> findAllPinned() {
+        return repository.findAllPinned(true);
+    }
+
+    @Benchmark
+    public int deleteAllByIds(DeleteBatch batch) {
+        return repository.deleteAllByIds(batch.ids);
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.lab6.service;
+
+import org.example.lab6.BenchmarkSupport;
+import org.example.lab6.entity.Topic;
+import org.example.lab6.repository.PostJdbcClientRepository;
+import org.example.lab6.repository.TopicJdbcTemplateRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// TopicService hot paths through the primary (JPA) repository, with real transactions and proxies
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TopicServiceBenchmark {
+
+    private static final int TOPICS = 100;
+    private static final int POSTS_PER_TOPIC = 200;
+
+    @Param({"0", "5", "50"})
+    int tagCount;
+
+    @Param({"100", "10000"})
+    int descriptionSize;
+
+    private ConfigurableApplicationContext context;
+    private TopicService topicService;
+    private UUID[] topicIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.start();
+        BenchmarkSupport.resetSchema(context);
+        topicIds = context.getBean(TopicJdbcTemplateRepository.class)
+                .saveAll(IntStream.range(0, TOPICS)
+                        .mapToObj(i -> BenchmarkSupport.topic(i, tagCount, descriptionSize))
+                        .toList())
+                .stream()
+                .map(Topic::getId)
+                .toArray(UUID[]::new);
+        context.getBean(PostJdbcClientRepository.class)
+                .importPosts(BenchmarkSupport.posts(TOPICS * POSTS_PER_TOPIC, topicIds));
+        topicService = context.getBean(TopicService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void touchReply() {
+        topicService.touchReply(BenchmarkSupport.pick(topicIds), LocalDateTime.now());
+    }
+
+    @Benchmark
+    public void incrementViewCount() {
+        topicService.incrementViewCount(BenchmarkSupport.pick(topicIds));
+    }
+
+    @Benchmark
+    public Topic getWithPosts() {
+        return topicService.getWithPosts(BenchmarkSupport.pick(topicIds));
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.lab6.service.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonpatch.JsonPatch;
+import org.example.lab6.BenchmarkSupport;
+import org.example.lab6.entity.Post;
+import org.example.lab6.entity.Topic;
+import org.example.lab6.repository.PatchedPost;
+import org.example.lab6.repository.PostJdbcClientRepository;
+import org.example.lab6.repository.PostPatch;
+import org.example.lab6.repository.PostRepository;
+import org.example.lab6.repository.TopicJdbcTemplateRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// The old json-patch path (read, tree round trip, full-row save) against the compiled partial UPDATE,
+// in memory and through the primary repository; compare time and gc.alloc.rate.norm as content grows
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonPatchBenchmark {
+
+    private static final int TOPICS = 10;
+    private static final int POSTS = 1000;
+    private static final String PATCH = """
+            [{"op": "test", "path": "/likes", "value": 0},
+             {"op": "replace", "path": "/title", "value": "Edited title"}]
+            """;
+
+    @Param({"200", "20000"})
+    int contentSize;
+
+    private ConfigurableApplicationContext context;
+    private ObjectMapper mapper;
+    private PostRepository repository;
+    private JsonPatch patch;
+    private Post post;
+    private UUID[] postIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkSupport.start();
+        BenchmarkSupport.resetSchema(context);
+        mapper = context.getBean(ObjectMapper.class);
+        repository = context.getBean(PostRepository.class);
+        patch = mapper.readValue(PATCH, JsonPatch.class);
+
+        UUID[] topicIds = context.getBean(TopicJdbcTemplateRepository.class)
+                .saveAll(IntStream.range(0, TOPICS).mapToObj(i -> BenchmarkSupport.topic(i, 3, 200)).toList())
+                .stream()
+                .map(Topic::getId)
+                .toArray(UUID[]::new);
+        String content = "x".repeat(contentSize);
+        context.getBean(PostJdbcClientRepository.class).importPosts(BenchmarkSupport.posts(POSTS, topicIds)
+                .peek(p -> {
+                    p.setContent(content);
+                    p.setLikes(0);
+                }));
+        List<UUID> ids = context.getBean(JdbcTemplate.class).queryForList("SELECT id FROM posts", UUID.class);
+        postIds = ids.toArray(UUID[]::new);
+        post = repository.findById(postIds[0]).orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Post treeRoundTripInMemory() throws Exception {
+        return mapper.treeToValue(patch.apply(mapper.valueToTree(post)), Post.class);
+    }
+
+    @Benchmark
+    public PostPatch compiledInMemory() {
+        return JsonPatchCompiler.compile(mapper.valueToTree(patch), 200);
+    }
+
+    // what PostApiService.patchJsonPatch did before: SELECT, patch a JSON copy, write every column back
+    @Benchmark
+    public Post treeRoundTripRepository() throws Exception {
+        Post current = repository.findById(BenchmarkSupport.pick(postIds)).orElseThrow();
+        JsonNode patched = patch.apply(mapper.valueToTree(current));
+        Post result = mapper.treeToValue(patched, Post.class);
+        result.setVersion(current.getVersion());
+        result.setUpdatedAt(LocalDateTime.now());
+        return repository.save(result);
+    }
+
+    @Benchmark
+    public Optional<PatchedPost> compiledRepository() {
+        return repository.patch(BenchmarkSupport.pick(postIds), JsonPatchCompiler.compile(mapper.valueToTree(patch), 200), null);
+    }
+}
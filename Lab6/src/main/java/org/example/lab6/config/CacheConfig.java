@@ -0,0 +1,46 @@
+package org.example.lab6.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// With spring.cache.type=none (profile "no-cache") the Caffeine manager backs off and Boot
+// registers a no-op one, so every @Cacheable read goes to the database again
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String TOPICS = "topics";
+    public static final String TOPIC = "topic";
+    public static final String TOPIC_WITH_POSTS = "topicWithPosts";
+    public static final String POST = "post";
+    public static final String POSTS_BY_TOPIC = "postsByTopic";
+
+    @Bean
+    @ConditionalOnProperty(name = "spring.cache.type", havingValue = "caffeine")
+    public CacheManager cacheManager(@Value("${forum.cache.entity-spec}") String entitySpec,
+                                     @Value("${forum.cache.list-spec}") String listSpec) {
+        CaffeineCacheManager caffeine = new CaffeineCacheManager();
+        register(caffeine, TOPIC, entitySpec);
+        register(caffeine, POST, entitySpec);
+        register(caffeine, TOPICS, listSpec);
+        register(caffeine, TOPIC_WITH_POSTS, listSpec);
+        register(caffeine, POSTS_BY_TOPIC, listSpec);
+        // puts and evictions wait for the surrounding commit, so a reader can never re-cache
+        // the pre-write state between an eviction and the commit that makes the write visible
+        return new TransactionAwareCacheManagerProxy(caffeine);
+    }
+
+    private static void register(CaffeineCacheManager manager, String name, String spec) {
+        Cache<Object, Object> cache = Caffeine.from(spec).build();
+        // Boot binds the cache.* meters of every registered cache; recordStats in the spec fills them
+        manager.registerCustomCache(name, cache);
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.lab6.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.example.lab6.repository.PostRepository;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+@Aspect
+@Component
+public class MetricsAspect {
+
+    private final MeterRegistry registry;
+    // one Timer per timed method and outcome, so a call costs a map lookup rather than a registration
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    public MetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Pointcut("execution(public * org.example.lab6.repository.PostRepository+.*(..))"
+            + " || execution(public * org.example.lab6.repository.TopicRepository+.*(..))")
+    void repositoryMethods() {
+    }
+
+    @Pointcut("execution(public * org.example.lab6.service.TopicService.*(..))"
+            + " || execution(public * org.example.lab6.service.api.PostApiService.*(..))")
+    void serviceMethods() {
+    }
+
+    @Around("repositoryMethods()")
+    public Object timeRepository(ProceedingJoinPoint pjp) throws Throwable {
+        return time("forum.repository", MetricsAspect::repositoryTags, pjp);
+    }
+
+    @Around("serviceMethods()")
+    public Object timeService(ProceedingJoinPoint pjp) throws Throwable {
+        return time("forum.service", type -> Tags.of("service", type.getSimpleName()), pjp);
+    }
+
+    private Object time(String name, Function<Class<?>, Tags> tags, ProceedingJoinPoint pjp) throws Throwable {
+        Class<?> target = AopUtils.getTargetClass(pjp.getTarget());
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        Timer.Sample sample = Timer.start(registry);
+        Object result;
+        try {
+            result = pjp.proceed();
+        } catch (Throwable e) {
+            sample.stop(timer(new TimerKey(name, target, method, e.getClass().getSimpleName()), tags));
+            throw e;
+        }
+        Timer timer = timer(new TimerKey(name, target, method, "none"), tags);
+        // a stream does its work while it is consumed, so it is timed until it is closed
+        if (result instanceof Stream<?> stream) {
+            return stream.onClose(() -> sample.stop(timer));
+        }
+        sample.stop(timer);
+        return result;
+    }
+
+    private Timer timer(TimerKey key, Function<Class<?>, Tags> tags) {
+        return timers.computeIfAbsent(key, k -> Timer.builder(k.name())
+                .tags(tags.apply(k.target()))
+                .tag("method", k.method().getName())
+                .tag("exception", k.exception())
+                .register(registry));
+    }
+
+    // PostJpaRepository -> (repository=post, impl=jpa), FakeTopicRepository -> (repository=topic, impl=fake)
+    private static Tags repositoryTags(Class<?> type) {
+        String name = type.getSimpleName();
+        String impl = name.startsWith("Fake") ? "fake" : name.contains("Jdbc") ? "jdbc" : name.contains("Jpa") ? "jpa" : name;
+        String repository = PostRepository.class.isAssignableFrom(type) ? "post" : "topic";
+        return Tags.of("repository", repository, "impl", impl);
+    }
+
+    private record TimerKey(String name, Class<?> target, Method method, String exception) {
+    }
+}
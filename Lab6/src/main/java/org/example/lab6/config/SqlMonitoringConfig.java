@@ -0,0 +1,94 @@
+package org.example.lab6.config;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.logging.SLF4JLogLevel;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.example.lab6.web.SqlStatistics;
+import org.example.lab6.web.StatementBudgetInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class SqlMonitoringConfig implements WebMvcConfigurer {
+
+    @Value("${forum.sql.statement-budget.fail:false}")
+    private boolean failOnBudget;
+
+    // static: post-processors are created before the rest of the configuration
+    @Bean
+    public static BeanPostProcessor dataSourceProxyPostProcessor(Environment env) {
+        long slowQueryMs = env.getProperty("forum.sql.slow-query-threshold-ms", Long.class, 200L);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ProxyDataSource) {
+                    return bean;
+                }
+                StatisticsListener statistics = new StatisticsListener();
+                return ProxyDataSourceBuilder.create(dataSource)
+                        .name(beanName)
+                        .listener(statistics)
+                        .methodListener(statistics)
+                        .proxyResultSet()
+                        .logSlowQueryBySlf4j(slowQueryMs, TimeUnit.MILLISECONDS, SLF4JLogLevel.WARN)
+                        .build();
+            }
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new StatementBudgetInterceptor(failOnBudget));
+    }
+
+    // feeds the per-request SqlStatistics; a no-op outside a request
+    static final class StatisticsListener implements QueryExecutionListener, MethodExecutionListener {
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            SqlStatistics stats = SqlStatistics.current();
+            if (stats != null) {
+                stats.beforeStatement();
+            }
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            SqlStatistics stats = SqlStatistics.current();
+            if (stats != null) {
+                stats.afterStatement(execInfo.getElapsedTime());
+            }
+        }
+
+        @Override
+        public void beforeMethod(MethodExecutionContext executionContext) {
+        }
+
+        @Override
+        public void afterMethod(MethodExecutionContext executionContext) {
+            if (executionContext.getTarget() instanceof ResultSet
+                    && "next".equals(executionContext.getMethod().getName())
+                    && Boolean.TRUE.equals(executionContext.getResult())) {
+                SqlStatistics stats = SqlStatistics.current();
+                if (stats != null) {
+                    stats.rowFetched();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.lab6.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+// Active with spring.threads.virtual.enabled=true (profile "virtual-threads"): Tomcat, MVC async
+// (NDJSON exports) and @Scheduled then run on virtual threads, and connection checkouts are gated
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public static BeanPostProcessor connectionLimitPostProcessor(Environment env) {
+        int maxConnections = env.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        long acquireTimeoutMs = env.getProperty("forum.db.acquire-timeout-ms", Long.class, 5000L);
+        return new OrderedPostProcessor(maxConnections, acquireTimeoutMs);
+    }
+
+    @Bean
+    public MeterBinder connectionLimitMetrics(DataSource dataSource) throws SQLException {
+        ConnectionLimitingDataSource limiter = dataSource.unwrap(ConnectionLimitingDataSource.class);
+        return registry -> {
+            Gauge.builder("forum.db.connection_limit.waiting", limiter, ConnectionLimitingDataSource::queueLength)
+                    .description("Threads waiting for a database connection permit")
+                    .register(registry);
+            Gauge.builder("forum.db.connection_limit.available", limiter, ConnectionLimitingDataSource::availablePermits)
+                    .description("Connection permits not currently held")
+                    .register(registry);
+        };
+    }
+
+    // runs before the unordered SQL monitoring proxy, so the limiter sits directly on the pool
+    private record OrderedPostProcessor(int maxConnections, long acquireTimeoutMs)
+            implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && !(bean instanceof ConnectionLimitingDataSource)) {
+                return new ConnectionLimitingDataSource(dataSource, maxConnections, acquireTimeoutMs);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -15,6 +15,8 @@ import java.util.UUID;
 @RequestMapping("/posts")
 public class PostController {
 
+    private static final int SEARCH_LIMIT = 50;
+
     private final PostService postService;
     private final TopicService topicService;
 
@@ -48,7 +50,7 @@ public class PostController {
     public String viewPost(@PathVariable UUID id,
                            @RequestParam(value = "backToTopicId", required = false) UUID backToTopicId,
                            Model model) {
-        Optional<Post> post = postService.getPostById(id);
+        Optional<Post> post = postService.getPostById(id).map(postService::withPendingLikes);
         if (post.isPresent()) {
             model.addAttribute("post", post.get());
             model.addAttribute("backToTopicId", backToTopicId);
@@ -125,20 +127,25 @@ public class PostController {
     @PostMapping("/{id}/like")
     public String likePost(@PathVariable UUID id,
                            @RequestParam(value = "backToTopicId", required = false) UUID backToTopicId) {
-        postService.likePost(id);
+        if (!postService.likePost(id)) {
+            return "error/404";
+        }
         return "redirect:/posts/" + id + (backToTopicId != null ? "?backToTopicId=" + backToTopicId : "");
     }
 
     @PostMapping("/{id}/unlike")
     public String unlikePost(@PathVariable UUID id,
                              @RequestParam(value = "backToTopicId", required = false) UUID backToTopicId) {
-        postService.unlikePost(id);
+        if (!postService.unlikePost(id)) {
+            return "error/404";
+        }
         return "redirect:/posts/" + id + (backToTopicId != null ? "?backToTopicId=" + backToTopicId : "");
     }
 
     @GetMapping("/search")
     public String searchPosts(@RequestParam String keyword, Model model) {
-        model.addAttribute("posts", postService.getPostByTitle(keyword));
+        model.addAttribute("posts", postService.searchPosts(keyword, SEARCH_LIMIT));
+        model.addAttribute("listTitle", "Search results for \"" + keyword + "\"");
         return "posts/list";
     }
 }
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import org.example.lab6.entity.Post;
 import org.example.lab6.entity.Topic;
 import org.example.lab6.service.TopicService;
+import org.example.lab6.web.StatementBudget;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -34,9 +35,10 @@ public class TopicController {
     }
 
     @GetMapping("/topics/{id}")
+    @StatementBudget(1)
     public String detail(@PathVariable UUID id, Model model) {
-        topicService.incrementViewCount(id);
         Topic topic = topicService.getWithPosts(id);
+        topicService.incrementViewCount(id);
         model.addAttribute("topic", topic);
         return "topics/detail";
     }
@@ -98,13 +100,13 @@ public class TopicController {
                          @RequestParam(required = false, defaultValue = "false") boolean pinned,
                          @RequestParam(required = false, defaultValue = "false") boolean closed,
                          @RequestParam(required = false, name = "tagsRaw") String tagsRaw) {
-        Topic topic = topicService.getById(id);
-        topic.setTitle(title);
-        topic.setDescription(description);
-        topic.setPinned(pinned);
-        topic.setClosed(closed);
-        topic.setTags(parseTags(tagsRaw));
-        topicService.update(topic);
+        topicService.edit(id, topic -> {
+            topic.setTitle(title);
+            topic.setDescription(description);
+            topic.setPinned(pinned);
+            topic.setClosed(closed);
+            topic.setTags(parseTags(tagsRaw));
+        });
 
         return "redirect:/topics/" + id;
     }
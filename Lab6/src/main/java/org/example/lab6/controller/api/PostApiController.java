@@ -1,15 +1,23 @@
 package org.example.lab6.controller.api;
 
 import com.github.fge.jsonpatch.JsonPatch;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.example.lab6.dto.*;
 import org.example.lab6.entity.Post;
+import org.example.lab6.repository.Fingerprint;
+import org.example.lab6.repository.PostSearchHit;
 import org.example.lab6.service.api.PostApiService;
+import org.example.lab6.web.ETags;
+import org.example.lab6.web.StatementBudget;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.net.URI;
 import java.time.OffsetDateTime;
 import java.util.Optional;
@@ -32,6 +40,11 @@ public class PostApiController {
                 .body(created);
     }
 
+    @PostMapping(path = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PostImportResult> importPosts(InputStream body) {
+        return ResponseEntity.ok(service.importNdjson(body));
+    }
+
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Page<Post>> list(
             @RequestParam(required = false) UUID authorId,
@@ -42,40 +55,89 @@ public class PostApiController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime createdAtTo,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
-            @RequestParam(required = false) String sort // e.g. "createdAt,desc"
+            @RequestParam(required = false) String sort, // e.g. "createdAt,desc"
+            @RequestParam(required = false) String cursor, // keyset mode; empty value starts from the first page
+            HttpServletRequest request
     ) {
-        return ResponseEntity.ok(
-                service.findAll(authorId, topicId, titleContains, minLikes,
+        if (cursor != null) {
+            // keyset pages never aggregate the whole filter set: the validators come from the rows
+            // sent, and ETags.ok answers 304 when they match the request
+            Page<Post> result = service.findAll(authorId, topicId, titleContains, minLikes,
+                    createdAtFrom, createdAtTo, page, size, sort, cursor, null);
+            Fingerprint rows = Fingerprint.ofPosts(result.getContent());
+            String etag = ETags.of(rows, authorId, topicId, titleContains, minLikes,
+                    createdAtFrom, createdAtTo, size, sort, cursor, result.getLinks().get("next"));
+            return ETags.ok(result, etag, rows);
+        }
+        // offset paging needs the total anyway: one aggregate query decides 304 and doubles as the COUNT
+        Fingerprint fingerprint = service.fingerprint(authorId, topicId, titleContains, minLikes,
+                createdAtFrom, createdAtTo);
+        String etag = ETags.of(fingerprint, authorId, topicId, titleContains, minLikes,
+                createdAtFrom, createdAtTo, page, size, sort);
+        if (ETags.notModified(request, etag, fingerprint)) {
+            return ETags.notModifiedResponse(etag, fingerprint);
+        }
+        return ETags.ok(service.findAll(authorId, topicId, titleContains, minLikes,
                         createdAtFrom, createdAtTo,
-                        page, size, sort)
-        );
+                        page, size, sort, cursor, fingerprint),
+                etag, fingerprint);
+    }
+
+    @GetMapping(path = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    @StatementBudget(2)
+    public ResponseEntity<Page<PostSearchHit>> search(
+            @RequestParam String q, // websearch syntax: words, "quoted phrases", OR, -excluded
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(service.search(q, page, size));
+    }
+
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export() {
+        StreamingResponseBody body = service::exportNdjson;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @StatementBudget(1)
     public ResponseEntity<Post> getOne(@PathVariable UUID id) {
+        // the row is the cheap part here; a matching If-None-Match still skips the serialization
         Optional<Post> found = service.findById(id);
-        return found.map(ResponseEntity::ok)
+        return found.map(post -> {
+                    Fingerprint fingerprint = Fingerprint.of(post);
+                    return ETags.ok(post, ETags.of(fingerprint, id), fingerprint);
+                })
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
+    // a stale If-Match surfaces as OptimisticLockingFailureException, answered 412 by GlobalExceptionHandler
     @PutMapping(path = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Post> put(@PathVariable UUID id, @Valid @RequestBody PostUpdateRequest req) {
-        Optional<Post> updated = service.replace(id, req);
-        return updated.map(ResponseEntity::ok)
-                .orElseGet(() -> ResponseEntity.notFound().build());
+    public ResponseEntity<Post> put(@PathVariable UUID id, @Valid @RequestBody PostUpdateRequest req,
+                                    @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return edited(id, service.replace(id, req, ETags.expectedVersion(ifMatch)));
     }
 
+    // a path or operation the compiled UPDATE cannot express is answered 400 by GlobalExceptionHandler
     @PatchMapping(path = "/{id}", consumes = "application/json-patch+json", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Post> patchJsonPatch(@PathVariable UUID id, @RequestBody JsonPatch patch) {
-        Optional<Post> updated = service.patchJsonPatch(id, patch);
-        return updated.map(ResponseEntity::ok)
-                .orElseGet(() -> ResponseEntity.notFound().build());
+    public ResponseEntity<Post> patchJsonPatch(@PathVariable UUID id, @RequestBody JsonPatch patch,
+                                               @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return edited(id, service.patchJsonPatch(id, patch, ETags.expectedVersion(ifMatch)));
     }
 
     @PatchMapping(path = "/{id}", consumes = "application/merge-patch+json", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Post> patchMerge(@PathVariable UUID id, @RequestBody PostMergePatch patch) {
-        Optional<Post> updated = service.patchMerge(id, patch);
-        return updated.map(ResponseEntity::ok)
+    public ResponseEntity<Post> patchMerge(@PathVariable UUID id, @RequestBody PostMergePatch patch,
+                                           @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return edited(id, service.patchMerge(id, patch, ETags.expectedVersion(ifMatch)));
+    }
+
+    // the new ETag lets the client chain the next edit without reading the post again
+    private ResponseEntity<Post> edited(UUID id, Optional<Post> updated) {
+        return updated.map(post -> ResponseEntity.ok()
+                        .eTag(ETags.of(Fingerprint.of(post), id))
+                        .body(post))
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
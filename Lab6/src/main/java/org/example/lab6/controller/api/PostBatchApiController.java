@@ -0,0 +1,32 @@
+package org.example.lab6.controller.api;
+
+import jakarta.validation.Valid;
+import org.example.lab6.dto.PostBatchRequest;
+import org.example.lab6.dto.PostBatchResult;
+import org.example.lab6.service.api.PostApiService;
+import org.example.lab6.web.StatementBudget;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+// Its own controller: a method path under PostApiController's "/api/v1/posts" would be joined with a
+// slash, and the custom-method style wants "/posts:batch"
+@RestController
+@RequestMapping("/api/v1")
+public class PostBatchApiController {
+    private final PostApiService service;
+
+    public PostBatchApiController(PostApiService service) {
+        this.service = service;
+    }
+
+    // two reads, at most two chunks per kind of write (1000 operations, 500 rows a chunk), one reply-stats update
+    @PostMapping(path = "/posts:batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @StatementBudget(11)
+    public ResponseEntity<PostBatchResult> batch(@Valid @RequestBody PostBatchRequest req) {
+        return ResponseEntity.ok(service.batch(req.operations()));
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.lab6.controller.api;
+
+import org.example.lab6.entity.Post;
+import org.example.lab6.service.ReactiveReadService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+// Accept: application/x-ndjson selects these over the JSON endpoints; rows are written as the driver emits them
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/v1/posts")
+public class ReactivePostApiController {
+    private final ReactiveReadService service;
+
+    public ReactivePostApiController(ReactiveReadService service) {
+        this.service = service;
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Post> list(
+            @RequestParam(required = false) UUID authorId,
+            @RequestParam(required = false) UUID topicId,
+            @RequestParam(name = "titleContains", required = false) String titleContains,
+            @RequestParam(required = false) Integer minLikes,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime createdAtFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime createdAtTo,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String sort
+    ) {
+        return service.findPosts(authorId, topicId, titleContains, minLikes, createdAtFrom, createdAtTo,
+                page, size, sort);
+    }
+
+    @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<Post>> getOne(@PathVariable UUID id) {
+        return service.findPost(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
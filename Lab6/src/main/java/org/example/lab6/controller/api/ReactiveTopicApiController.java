@@ -0,0 +1,42 @@
+package org.example.lab6.controller.api;
+
+import org.example.lab6.entity.Post;
+import org.example.lab6.entity.Topic;
+import org.example.lab6.service.ReactiveReadService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/v1/topics")
+public class ReactiveTopicApiController {
+    private final ReactiveReadService service;
+
+    public ReactiveTopicApiController(ReactiveReadService service) {
+        this.service = service;
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Topic> list(@RequestParam(defaultValue = "0") int page,
+                            @RequestParam(defaultValue = "20") int size) {
+        return service.findTopics(page, size);
+    }
+
+    @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<Topic>> getOne(@PathVariable UUID id) {
+        return service.findTopic(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(path = "/{id}/posts", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Post> posts(@PathVariable UUID id) {
+        return service.findPostsOfTopic(id);
+    }
+}
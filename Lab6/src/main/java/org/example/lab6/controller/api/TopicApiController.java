@@ -1,18 +1,26 @@
 package org.example.lab6.controller.api;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.example.lab6.dto.TopicCreateRequest;
 import org.example.lab6.dto.TopicUpdateRequest;
 import org.example.lab6.entity.Post;
 import org.example.lab6.entity.Topic;
+import org.example.lab6.repository.Fingerprint;
+import org.example.lab6.repository.TopicSuggestion;
 import org.example.lab6.service.TopicService;
+import org.example.lab6.web.ETags;
+import org.example.lab6.web.StatementBudget;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
@@ -32,9 +40,21 @@ public class TopicApiController {
             @RequestParam(required = false) String author,
             @RequestParam(required = false) Boolean pinned,
             @RequestParam(required = false) Boolean closed,
-            @RequestParam(required = false) Boolean deleted
+            @RequestParam(required = false) Boolean deleted,
+            HttpServletRequest request
     ) {
-        List<Topic> filtered = topicService.findAll();
+        // a revalidation is answered from one aggregate query, without loading (or filtering) the topics
+        if (ETags.isConditional(request)) {
+            Fingerprint current = topicService.fingerprintAll();
+            String etag = ETags.of(current, title, author, pinned, closed, deleted);
+            if (ETags.notModified(request, etag, current)) {
+                return ETags.notModifiedResponse(etag, current);
+            }
+        }
+        List<Topic> all = topicService.findAll();
+        // validators describe the list actually sent, which may come from the cache
+        Fingerprint fingerprint = Fingerprint.ofTopics(all);
+        List<Topic> filtered = all;
         if (title != null || author != null || pinned != null || closed != null || deleted != null) {
             filtered = filtered.stream()
                     .filter(t -> title == null || (t.getTitle() != null && t.getTitle().toLowerCase().contains(title.toLowerCase())))
@@ -44,13 +64,43 @@ public class TopicApiController {
                     .filter(t -> deleted == null || deleted.equals(t.getDeleted()))
                     .toList();
         }
-        return ResponseEntity.ok(filtered);
+        return ETags.ok(filtered, ETags.of(fingerprint, title, author, pinned, closed, deleted), fingerprint);
+    }
+
+    @GetMapping(path = "/typeahead", produces = MediaType.APPLICATION_JSON_VALUE)
+    @StatementBudget(2)
+    public ResponseEntity<List<TopicSuggestion>> typeahead(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "title") String field, // title | author
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(topicService.typeahead(q, field, limit));
+    }
+
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export() {
+        StreamingResponseBody body = topicService::exportNdjson;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Topic> getOne(@PathVariable UUID id) {
+    @StatementBudget(2) // fingerprint probe on a revalidation, then the topic with its posts if it changed
+    public ResponseEntity<Topic> getOne(@PathVariable UUID id, HttpServletRequest request) {
+        if (ETags.isConditional(request)) {
+            Optional<Fingerprint> current = topicService.fingerprint(id);
+            if (current.isPresent()) {
+                String etag = ETags.of(current.get(), id);
+                if (ETags.notModified(request, etag, current.get())) {
+                    return ETags.notModifiedResponse(etag, current.get());
+                }
+            }
+        }
         try {
-            return ResponseEntity.ok(topicService.getWithPosts(id));
+            Topic topic = topicService.getWithPosts(id);
+            Fingerprint fingerprint = Fingerprint.ofTopicWithPosts(topic);
+            return ETags.ok(topic, ETags.of(fingerprint, id), fingerprint);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.notFound().build();
         }
@@ -70,17 +120,20 @@ public class TopicApiController {
     }
 
     @PutMapping(path = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Topic> update(@PathVariable UUID id, @Valid @RequestBody TopicUpdateRequest req) {
+    public ResponseEntity<Topic> update(@PathVariable UUID id, @Valid @RequestBody TopicUpdateRequest req,
+                                        @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Topic topic = topicService.getById(id);
-            topic.setTitle(req.title());
-            topic.setDescription(req.description());
-            if (req.pinned() != null) topic.setPinned(req.pinned());
-            if (req.closed() != null) topic.setClosed(req.closed());
-            if (req.tags() != null) topic.setTags(cleanTags(req.tags()));
-            if (req.deleted() != null) topic.setDeleted(req.deleted());
-            Topic updated = topicService.update(topic);
-            return ResponseEntity.ok(updated);
+            Topic updated = topicService.edit(id, ETags.expectedVersion(ifMatch), topic -> {
+                topic.setTitle(req.title());
+                topic.setDescription(req.description());
+                if (req.pinned() != null) topic.setPinned(req.pinned());
+                if (req.closed() != null) topic.setClosed(req.closed());
+                if (req.tags() != null) topic.setTags(cleanTags(req.tags()));
+                if (req.deleted() != null) topic.setDeleted(req.deleted());
+            });
+            return ResponseEntity.ok()
+                    .eTag(ETags.of(Fingerprint.ofTopic(updated), id))
+                    .body(updated);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.notFound().build();
         }
@@ -0,0 +1,13 @@
+package org.example.lab6.dto;
+
+import java.util.UUID;
+
+// status is the HTTP status the operation would have had on its own; version is the post's new version
+public record PostBatchItemResult(
+        int index,
+        PostBatchOperation.Op op,
+        int status,
+        UUID id,
+        Long version,
+        String error
+) {}
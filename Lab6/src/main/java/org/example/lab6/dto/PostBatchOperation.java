@@ -0,0 +1,27 @@
+package org.example.lab6.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.UUID;
+
+// one item of POST /api/v1/posts:batch; which fields apply depends on op:
+// create (authorId, topicId, title, content), update (id, version, topicId, title, content — absent fields
+// are kept), delete (id, version), like / unlike (id)
+public record PostBatchOperation(
+        @NotNull Op op,
+        UUID id,
+        Long version,
+        UUID authorId,
+        UUID topicId,
+        String title,
+        String content
+) {
+    public enum Op {
+        @JsonProperty("create") CREATE,
+        @JsonProperty("update") UPDATE,
+        @JsonProperty("delete") DELETE,
+        @JsonProperty("like") LIKE,
+        @JsonProperty("unlike") UNLIKE
+    }
+}
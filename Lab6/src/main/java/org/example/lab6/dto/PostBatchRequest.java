@@ -0,0 +1,11 @@
+package org.example.lab6.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record PostBatchRequest(
+        @NotEmpty @Size(max = 1000) List<@Valid PostBatchOperation> operations
+) {}
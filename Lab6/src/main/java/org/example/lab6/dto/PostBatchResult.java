@@ -0,0 +1,10 @@
+package org.example.lab6.dto;
+
+import java.util.List;
+
+public record PostBatchResult(
+        List<PostBatchItemResult> results,
+        int succeeded,
+        int failed,
+        int topicsUpdated
+) {}
@@ -0,0 +1,13 @@
+package org.example.lab6.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record PostImportRecord(
+        UUID authorId,
+        UUID topicId,
+        String title,
+        String content,
+        Integer likes,
+        LocalDateTime createdAt
+) {}
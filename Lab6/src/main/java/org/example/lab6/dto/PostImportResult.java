@@ -0,0 +1,6 @@
+package org.example.lab6.dto;
+
+public record PostImportResult(
+        long imported,
+        int topicsUpdated
+) {}
@@ -2,6 +2,8 @@ package org.example.lab6.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
+import jakarta.persistence.ColumnResult;
+import jakarta.persistence.EntityResult;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
@@ -10,7 +12,9 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.NamedQuery;
+import jakarta.persistence.SqlResultSetMapping;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -25,8 +29,19 @@ import java.util.UUID;
         name = "Post.findByAuthorId",
         query = "select p from Post p where p.authorId = :authorId order by p.createdAt desc"
 )
+@SqlResultSetMapping(
+        name = Post.SEARCH_HIT_MAPPING,
+        entities = @EntityResult(entityClass = Post.class),
+        columns = {
+                @ColumnResult(name = "rank"),
+                @ColumnResult(name = "title_highlight"),
+                @ColumnResult(name = "content_highlight")
+        }
+)
 public class Post {
 
+    public static final String SEARCH_HIT_MAPPING = "Post.searchHit";
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
@@ -54,6 +69,11 @@ public class Post {
     @Column(nullable = false)
     private LocalDateTime updatedAt = LocalDateTime.now();
 
+    // optimistic lock for edits; the like counter is updated around it
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "topic_id", referencedColumnName = "id", insertable = false, updatable = false)
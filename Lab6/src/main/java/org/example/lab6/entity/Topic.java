@@ -10,6 +10,8 @@ import jakarta.persistence.NamedQuery;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OrderBy;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.JdbcTypeCode;
@@ -43,10 +45,11 @@ public class Topic {
     @Column(nullable = false)
     private String author;
 
-    @Column(nullable = false)
+    // counters are maintained by dedicated UPDATE statements, never by a full-row merge
+    @Column(nullable = false, updatable = false)
     private Integer viewCount;
 
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private Integer replyCount;
 
     @Column(nullable = false)
@@ -62,7 +65,7 @@ public class Topic {
     @Column(nullable = false)
     private Boolean deleted;
 
-    @Column
+    @Column(updatable = false)
     private LocalDateTime lastPostAt;
 
     @CreationTimestamp
@@ -73,7 +76,16 @@ public class Topic {
     @Column(nullable = false)
     private LocalDateTime updatedAt;
 
+    // optimistic lock for edits; the counters above are updated around it
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @OneToMany(mappedBy = "topic", fetch = FetchType.LAZY)
     @OrderBy("createdAt desc")
     private List<Post> posts;
+
+    // keyset cursor for /api/v1/posts?topicId=...&cursor=... when not all posts are embedded
+    @Transient
+    private String postsCursor;
 }
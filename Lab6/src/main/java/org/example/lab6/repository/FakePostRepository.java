@@ -2,30 +2,47 @@ package org.example.lab6.repository;
 
 import org.example.lab6.entity.Post;
 import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 @Profile("fake")
 public class FakePostRepository implements PostRepository {
 
+    private static final int IMPORT_BATCH = 1000;
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
     private final Map<UUID, Post> posts = new ConcurrentHashMap<>();
+    private final SecondaryIndex<UUID> byTopic = new SecondaryIndex<>();
+    private final SecondaryIndex<UUID> byAuthor = new SecondaryIndex<>();
+    // words of title + content for search(), title trigrams for the substring filters
+    private final TextIndex words = TextIndex.words();
+    private final TextIndex titleGrams = TextIndex.trigrams();
+    // keys each post is currently indexed under; stored posts are shared and may be edited before save()
+    private final Map<UUID, IndexedKeys> indexedKeys = new ConcurrentHashMap<>();
+
+    private record IndexedKeys(UUID topicId, UUID authorId) {
+    }
 
     @Override
     public List<Post> findByTopicId(UUID topicId) {
-        return posts.values().stream()
-                .filter(p -> p.getTopicId() != null && p.getTopicId().equals(topicId))
+        return lookup(byTopic, topicId)
+                .filter(p -> topicId.equals(p.getTopicId()))
                 .collect(Collectors.toList());
     }
 
     @Override
     public List<Post> findByAuthorId(UUID authorId) {
-        return posts.values().stream()
-                .filter(p -> p.getAuthorId() != null && p.getAuthorId().equals(authorId))
+        return lookup(byAuthor, authorId)
+                .filter(p -> authorId.equals(p.getAuthorId()))
                 .collect(Collectors.toList());
     }
 
@@ -41,19 +58,38 @@ public class FakePostRepository implements PostRepository {
             post.setCreatedAt(LocalDateTime.now());
         }
         post.setUpdatedAt(LocalDateTime.now());
-        posts.put(post.getId(), post);
+        put(post);
         return post;
     }
 
     @Override
     public boolean deleteById(UUID id) {
-        return posts.remove(id) != null;
+        return delete(id, null);
+    }
+
+    // a null version deletes whatever is stored
+    private boolean delete(UUID id, Long version) {
+        boolean[] removed = {false};
+        posts.computeIfPresent(id, (k, old) -> {
+            if (version != null && !version.equals(old.getVersion())) return old;
+            IndexedKeys keys = indexedKeys.remove(k);
+            if (keys != null) {
+                byTopic.remove(keys.topicId(), k);
+                byAuthor.remove(keys.authorId(), k);
+            }
+            words.remove(k);
+            titleGrams.remove(k);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
     }
 
     @Override
     public List<Post> findByTitleContaining(String keyword) {
-        return posts.values().stream()
-                .filter(p -> p.getTitle() != null && p.getTitle().toLowerCase().contains(keyword.toLowerCase()))
+        String needle = keyword.toLowerCase(Locale.ROOT);
+        return titleCandidates(keyword)
+                .filter(p -> p.getTitle() != null && p.getTitle().toLowerCase(Locale.ROOT).contains(needle))
                 .collect(Collectors.toList());
     }
 
@@ -62,6 +98,64 @@ public class FakePostRepository implements PostRepository {
         return new ArrayList<>(posts.values());
     }
 
+    @Override
+    public Stream<Post> streamAll() {
+        return posts.values().stream();
+    }
+
+    @Override
+    public List<Post> findAll(PostQuery query) {
+        Comparator<Post> comparator = comparator(query);
+        Post cursor = query.after() != null ? cursorProbe(query.after()) : null;
+        return candidates(query)
+                .filter(p -> matches(p, query))
+                .filter(p -> cursor == null || comparator.compare(p, cursor) > 0)
+                .sorted(comparator)
+                .skip(query.offset())
+                .limit(query.limit())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long count(PostQuery query) {
+        return candidates(query)
+                .filter(p -> matches(p, query))
+                .count();
+    }
+
+    @Override
+    public Fingerprint fingerprint(PostQuery query) {
+        List<Post> matching = candidates(query)
+                .filter(p -> matches(p, query))
+                .toList();
+        return new Fingerprint(matching.size(),
+                Fingerprint.latest(matching.stream().map(Post::getUpdatedAt)), 0);
+    }
+
+    @Override
+    public List<PostSearchHit> search(String query, int offset, int limit) {
+        List<String> terms = terms(query);
+        // rank every match, highlight only the requested page
+        return searchCandidates(query)
+                .map(p -> new PostSearchHit(p, rank(p, terms), null, null))
+                .filter(h -> h.rank() > 0)
+                .sorted(Comparator.comparingDouble(PostSearchHit::rank).reversed()
+                        .thenComparing(h -> h.post().getId()))
+                .skip(offset)
+                .limit(limit)
+                .map(h -> PostSearchHit.highlighted(h.post(), h.rank(),
+                        highlight(h.post().getTitle(), terms), highlight(h.post().getContent(), terms)))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long countSearch(String query) {
+        List<String> terms = terms(query);
+        return searchCandidates(query)
+                .filter(p -> rank(p, terms) > 0)
+                .count();
+    }
+
     @Override
     public boolean incrementLikes(UUID id) {
         Post post = posts.get(id);
@@ -86,13 +180,265 @@ public class FakePostRepository implements PostRepository {
 
     @Override
     public boolean update(UUID id, String newTitle, String newContent) {
-        Post post = posts.get(id);
-        if (post != null) {
+        boolean[] updated = {false};
+        posts.computeIfPresent(id, (k, post) -> {
             post.setTitle(newTitle);
             post.setContent(newContent);
             post.setUpdatedAt(LocalDateTime.now());
-            return true;
+            post.setVersion(post.getVersion() + 1);
+            indexText(k, post);
+            updated[0] = true;
+            return post;
+        });
+        return updated[0];
+    }
+
+    @Override
+    public Optional<PatchedPost> patch(UUID id, PostPatch patch, Long expectedVersion) {
+        PatchedPost[] patched = {null};
+        posts.computeIfPresent(id, (k, post) -> {
+            if (expectedVersion != null && !expectedVersion.equals(post.getVersion())) return post;
+            for (Map.Entry<PostPatch.Field, Object> test : patch.expected().entrySet()) {
+                if (!Objects.equals(get(post, test.getKey()), test.getValue())) return post;
+            }
+            UUID previousTopicId = post.getTopicId();
+            if (patch.values().isEmpty()) {
+                // nothing assigned: the checks passed, the post is unchanged and keeps its version
+                patched[0] = new PatchedPost(post, previousTopicId);
+                return post;
+            }
+            patch.values().forEach((field, value) -> set(post, field, value));
+            post.setUpdatedAt(LocalDateTime.now());
+            post.setVersion(post.getVersion() + 1);
+            reindex(k, post);
+            patched[0] = new PatchedPost(post, previousTopicId);
+            return post;
+        });
+        return Optional.ofNullable(patched[0]);
+    }
+
+    @Override
+    public List<Post> findAllById(Collection<UUID> ids) {
+        return ids.stream().map(posts::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public boolean[] insertAll(List<Post> batch) {
+        boolean[] inserted = new boolean[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            put(batch.get(i));
+            inserted[i] = true;
         }
-        return false;
+        return inserted;
+    }
+
+    @Override
+    public boolean[] updateAll(List<Post> batch) {
+        boolean[] updated = new boolean[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            Post edit = batch.get(i);
+            boolean[] applied = {false};
+            posts.computeIfPresent(edit.getId(), (k, post) -> {
+                if (!post.getVersion().equals(edit.getVersion())) return post;
+                post.setTopicId(edit.getTopicId());
+                post.setTitle(edit.getTitle());
+                post.setContent(edit.getContent());
+                post.setUpdatedAt(edit.getUpdatedAt());
+                post.setVersion(post.getVersion() + 1);
+                reindex(k, post);
+                applied[0] = true;
+                return post;
+            });
+            updated[i] = applied[0];
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean[] deleteAll(List<Post> batch) {
+        boolean[] deleted = new boolean[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            deleted[i] = delete(batch.get(i).getId(), batch.get(i).getVersion());
+        }
+        return deleted;
+    }
+
+    @Override
+    public int addLikes(Map<UUID, LikeDelta> deltas) {
+        int updated = 0;
+        for (Map.Entry<UUID, LikeDelta> e : deltas.entrySet()) {
+            Post post = posts.computeIfPresent(e.getKey(), (k, p) -> {
+                p.setLikes(e.getValue().applyTo(p.getLikes()));
+                p.setUpdatedAt(LocalDateTime.now());
+                return p;
+            });
+            if (post != null) updated++;
+        }
+        return updated;
+    }
+
+    private static Object get(Post post, PostPatch.Field field) {
+        return switch (field) {
+            case TITLE -> post.getTitle();
+            case CONTENT -> post.getContent();
+            case TOPIC_ID -> post.getTopicId();
+            case LIKES -> post.getLikes();
+        };
+    }
+
+    private static void set(Post post, PostPatch.Field field, Object value) {
+        switch (field) {
+            case TITLE -> post.setTitle((String) value);
+            case CONTENT -> post.setContent((String) value);
+            case TOPIC_ID -> post.setTopicId((UUID) value);
+            case LIKES -> post.setLikes((Integer) value);
+        }
+    }
+
+    @Override
+    public long importPosts(Stream<Post> incoming) {
+        Map<UUID, Post> batch = new HashMap<>();
+        long imported = 0;
+        Iterator<Post> it = incoming.iterator();
+        while (it.hasNext()) {
+            Post post = it.next();
+            post.setId(UUID.randomUUID());
+            batch.put(post.getId(), post);
+            if (batch.size() == IMPORT_BATCH) {
+                batch.values().forEach(this::put);
+                imported += batch.size();
+                batch.clear();
+            }
+        }
+        batch.values().forEach(this::put);
+        return imported + batch.size();
+    }
+
+    // the entry and its index keys change under the same map lock, so lookups never miss a stored post
+    private void put(Post post) {
+        posts.compute(post.getId(), (id, old) -> {
+            if (old != null && post.getVersion() != null && !post.getVersion().equals(old.getVersion())) {
+                throw new OptimisticLockingFailureException("Post " + id + " is no longer at version " + post.getVersion());
+            }
+            post.setVersion(old != null ? old.getVersion() + 1 : 0L);
+            reindex(id, post);
+            return post;
+        });
+    }
+
+    private void reindex(UUID id, Post post) {
+        IndexedKeys next = new IndexedKeys(post.getTopicId(), post.getAuthorId());
+        IndexedKeys prev = indexedKeys.put(id, next);
+        byTopic.move(prev != null ? prev.topicId() : null, next.topicId(), id);
+        byAuthor.move(prev != null ? prev.authorId() : null, next.authorId(), id);
+        indexText(id, post);
+    }
+
+    private void indexText(UUID id, Post post) {
+        words.put(id, Objects.toString(post.getTitle(), "") + " " + Objects.toString(post.getContent(), ""));
+        titleGrams.put(id, post.getTitle());
+    }
+
+    private Stream<Post> lookup(SecondaryIndex<UUID> index, UUID key) {
+        return lookup(index.get(key));
+    }
+
+    private Stream<Post> lookup(Set<UUID> ids) {
+        return ids.stream()
+                .map(posts::get)
+                .filter(Objects::nonNull);
+    }
+
+    private Stream<Post> candidates(PostQuery query) {
+        if (query.topicId() != null) return lookup(byTopic, query.topicId());
+        if (query.authorId() != null) return lookup(byAuthor, query.authorId());
+        if (query.hasTitleFilter()) return titleCandidates(query.titleContains());
+        return posts.values().stream();
+    }
+
+    // substrings shorter than a trigram cannot use the index, same as pg_trgm
+    private Stream<Post> titleCandidates(String needle) {
+        Set<UUID> ids = titleGrams.candidates(needle);
+        return ids != null ? lookup(ids) : posts.values().stream();
+    }
+
+    private Stream<Post> searchCandidates(String query) {
+        Set<UUID> ids = words.candidates(query);
+        return ids != null ? lookup(ids) : Stream.empty();
+    }
+
+    private static boolean matches(Post p, PostQuery query) {
+        if (query.authorId() != null && !query.authorId().equals(p.getAuthorId())) return false;
+        if (query.topicId() != null && !query.topicId().equals(p.getTopicId())) return false;
+        if (query.hasTitleFilter()) {
+            String title = p.getTitle() == null ? "" : p.getTitle().toLowerCase(Locale.ROOT);
+            if (!title.contains(query.titleContains().toLowerCase(Locale.ROOT))) return false;
+        }
+        if (query.minLikes() != null && p.getLikes() < query.minLikes()) return false;
+        if (query.createdAtFrom() != null
+                && (p.getCreatedAt() == null || p.getCreatedAt().isBefore(query.createdAtFrom()))) return false;
+        if (query.createdAtTo() != null
+                && (p.getCreatedAt() == null || p.getCreatedAt().isAfter(query.createdAtTo()))) return false;
+        return true;
+    }
+
+    // re-checks the index hit: every term has to occur in the title or the content, 0 otherwise;
+    // title hits weigh more, as with setweight 'A' vs 'B'
+    private static double rank(Post p, List<String> terms) {
+        if (terms.isEmpty()) return 0;
+        List<String> title = TextIndex.words(p.getTitle());
+        List<String> content = TextIndex.words(p.getContent());
+        double rank = 0;
+        for (String term : terms) {
+            long inTitle = title.stream().filter(term::equals).count();
+            long inContent = content.stream().filter(term::equals).count();
+            if (inTitle + inContent == 0) return 0;
+            rank += inTitle + 0.4 * inContent;
+        }
+        return rank / (1 + title.size() + content.size());
+    }
+
+    private static List<String> terms(String query) {
+        return TextIndex.words(query).stream().distinct().toList();
+    }
+
+    private static String highlight(String text, List<String> terms) {
+        if (text == null) return null;
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        Matcher m = WORD.matcher(text);
+        int last = 0;
+        while (m.find()) {
+            sb.append(text, last, m.start());
+            if (terms.contains(m.group().toLowerCase(Locale.ROOT))) {
+                sb.append(PostSearchHit.MATCH_START).append(m.group()).append(PostSearchHit.MATCH_END);
+            } else {
+                sb.append(m.group());
+            }
+            last = m.end();
+        }
+        return sb.append(text, last, text.length()).toString();
+    }
+
+    private static Post cursorProbe(PostCursor cursor) {
+        Post probe = new Post();
+        probe.setId(cursor.id());
+        switch (cursor.sortKey()) {
+            case CREATED_AT -> probe.setCreatedAt((LocalDateTime) cursor.value());
+            case UPDATED_AT -> probe.setUpdatedAt((LocalDateTime) cursor.value());
+            case LIKES -> probe.setLikes((Integer) cursor.value());
+            case TITLE -> probe.setTitle((String) cursor.value());
+        }
+        return probe;
+    }
+
+    private static Comparator<Post> comparator(PostQuery query) {
+        Comparator<Post> c = switch (query.sortKey()) {
+            case UPDATED_AT -> Comparator.comparing(Post::getUpdatedAt, Comparator.nullsFirst(Comparator.naturalOrder()));
+            case LIKES -> Comparator.comparingInt(Post::getLikes);
+            case TITLE -> Comparator.comparing((Post p) -> Optional.ofNullable(p.getTitle()).orElse(""), String.CASE_INSENSITIVE_ORDER);
+            case CREATED_AT -> Comparator.comparing(Post::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()));
+        };
+        c = c.thenComparing(Post::getId);
+        return query.descending() ? c.reversed() : c;
     }
 }
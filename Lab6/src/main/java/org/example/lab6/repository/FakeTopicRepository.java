@@ -1,19 +1,43 @@
 package org.example.lab6.repository;
 
+import org.example.lab6.entity.Post;
 import org.example.lab6.entity.Topic;
 import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 @Profile("fake")
 public class FakeTopicRepository implements TopicRepository {
 
-    private final Map<UUID, Topic> storage = new ConcurrentHashMap<>();
+    // pg_trgm.word_similarity_threshold default
+    private static final double WORD_SIMILARITY_THRESHOLD = 0.6;
+    private static final Comparator<Snapshot> NEWEST_FIRST =
+            Comparator.comparing(Snapshot::createdAt, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    // immutable snapshots: reads materialize a shallow Topic, writes build exactly one new snapshot
+    private final Map<UUID, Snapshot> storage = new ConcurrentHashMap<>();
+    private final SecondaryIndex<Boolean> byDeleted = new SecondaryIndex<>();
+    private final SecondaryIndex<Boolean> byPinned = new SecondaryIndex<>();
+    private final SecondaryIndex<Boolean> byClosed = new SecondaryIndex<>();
+    // trigram postings: findAllByTitle/findAllByAuthor are substring searches, as ILIKE '%x%' in the SQL repositories
+    private final TextIndex titleGrams = TextIndex.trigrams();
+    private final TextIndex authorGrams = TextIndex.trigrams();
+    private final FakePostRepository postRepository;
+
+    public FakeTopicRepository(FakePostRepository postRepository) {
+        this.postRepository = postRepository;
+    }
 
     private static LocalDateTime now() {
         return LocalDateTime.now();
@@ -23,88 +47,168 @@ public class FakeTopicRepository implements TopicRepository {
         return Objects.equals(a, b);
     }
 
-    private static boolean equalsIgnoreCase(String a, String b) {
-        if (a == null || b == null) return false;
-        return a.trim().equalsIgnoreCase(b.trim());
-    }
-
-    @SuppressWarnings("unused")
     private static boolean containsIgnoreCase(String haystack, String needle) {
         if (haystack == null || needle == null) return false;
-        return haystack.toLowerCase().contains(needle.toLowerCase().trim());
+        return haystack.toLowerCase(Locale.ROOT).contains(needle.toLowerCase(Locale.ROOT));
+    }
+
+    private record Snapshot(UUID id, String title, String description, String author,
+                            Integer viewCount, Integer replyCount, Boolean pinned, Boolean closed,
+                            Set<String> tags, Boolean deleted, LocalDateTime lastPostAt,
+                            LocalDateTime createdAt, LocalDateTime updatedAt, Long version) {
+
+        // Set.copyOf returns an already immutable set as is, so unchanged tags are never copied again
+        static Snapshot of(Topic t) {
+            return new Snapshot(t.getId(), t.getTitle(), t.getDescription(), t.getAuthor(),
+                    t.getViewCount(), t.getReplyCount(), t.getPinned(), t.getClosed(),
+                    t.getTags() == null ? null : Set.copyOf(t.getTags()), t.getDeleted(), t.getLastPostAt(),
+                    t.getCreatedAt(), t.getUpdatedAt(), t.getVersion());
+        }
+
+        Topic toTopic() {
+            Topic t = new Topic();
+            t.setId(id);
+            t.setTitle(title);
+            t.setDescription(description);
+            t.setAuthor(author);
+            t.setViewCount(viewCount);
+            t.setReplyCount(replyCount);
+            t.setPinned(pinned);
+            t.setClosed(closed);
+            t.setTags(tags);
+            t.setDeleted(deleted);
+            t.setLastPostAt(lastPostAt);
+            t.setCreatedAt(createdAt);
+            t.setUpdatedAt(updatedAt);
+            t.setVersion(version);
+            return t;
+        }
     }
 
-    private static Topic copy(Topic t) {
-        if (t == null) return null;
-        Topic c = new Topic();
-        c.setId(t.getId());
-        c.setTitle(t.getTitle());
-        c.setDescription(t.getDescription());
-        c.setAuthor(t.getAuthor());
-        c.setViewCount(t.getViewCount());
-        c.setReplyCount(t.getReplyCount());
-        c.setPinned(t.getPinned());
-        c.setClosed(t.getClosed());
-        c.setTags(t.getTags() == null ? null : Set.copyOf(t.getTags()));
-        c.setDeleted(t.getDeleted());
-        c.setLastPostAt(t.getLastPostAt());
-        c.setCreatedAt(t.getCreatedAt());
-        c.setUpdatedAt(t.getUpdatedAt());
-        return c;
+    private static Topic toTopic(Snapshot s) {
+        return s == null ? null : s.toTopic();
     }
 
-    private static List<Topic> copyList(Collection<Topic> list) {
-        return list.stream().map(FakeTopicRepository::copy).collect(Collectors.toUnmodifiableList());
+    private static List<Topic> toTopics(Stream<Snapshot> snapshots) {
+        return snapshots.map(Snapshot::toTopic).collect(Collectors.toUnmodifiableList());
     }
 
     @Override
     public List<Topic> findAll() {
-        return copyList(storage.values());
+        return toTopics(storage.values().stream());
+    }
+
+    @Override
+    public Stream<Topic> streamAll() {
+        return storage.values().stream().map(Snapshot::toTopic);
     }
 
     @Override
     public List<Topic> findAllDeleted(Boolean deleted) {
-        var res = storage.values().stream()
-                .filter(t -> eq(t.getDeleted(), deleted))
-                .collect(Collectors.toList());
-        return copyList(res);
+        return byFlag(byDeleted, deleted, t -> eq(t.deleted(), deleted));
     }
 
     @Override
     public List<Topic> findAllPinned(Boolean pinned) {
-        var res = storage.values().stream()
-                .filter(t -> eq(t.getPinned(), pinned))
-                .collect(Collectors.toList());
-        return copyList(res);
+        return byFlag(byPinned, pinned, t -> eq(t.pinned(), pinned));
     }
 
     @Override
     public List<Topic> findAllClosed(Boolean closed) {
-        var res = storage.values().stream()
-                .filter(t -> eq(t.getClosed(), closed))
-                .collect(Collectors.toList());
-        return copyList(res);
+        return byFlag(byClosed, closed, t -> eq(t.closed(), closed));
+    }
+
+    // null flags are not indexed, so asking for them still scans
+    private List<Topic> byFlag(SecondaryIndex<Boolean> index, Boolean value, Predicate<Snapshot> check) {
+        if (value == null) {
+            return toTopics(storage.values().stream().filter(check));
+        }
+        return resolve(index.get(value), check);
+    }
+
+    private List<Topic> resolve(Set<UUID> ids, Predicate<Snapshot> check) {
+        return toTopics(ids.stream()
+                .map(storage::get)
+                .filter(t -> t != null && check.test(t)));
     }
 
     @Override
     public List<Topic> findAllByTitle(String title) {
-        var res = storage.values().stream()
-                .filter(t -> equalsIgnoreCase(t.getTitle(), title))
-                .collect(Collectors.toList());
-        return copyList(res);
+        return containing(titleGrams, title, t -> containsIgnoreCase(t.title(), title));
     }
 
     @Override
     public List<Topic> findAllByAuthor(String author) {
-        var res = storage.values().stream()
-                .filter(t -> equalsIgnoreCase(t.getAuthor(), author))
+        return containing(authorGrams, author, t -> containsIgnoreCase(t.author(), author));
+    }
+
+    @Override
+    public List<TopicSuggestion> suggestByTitle(String query, int limit, Duration budget) {
+        return suggest(titleGrams, Snapshot::title, query, limit);
+    }
+
+    @Override
+    public List<TopicSuggestion> suggestByAuthor(String query, int limit, Duration budget) {
+        return suggest(authorGrams, Snapshot::author, query, limit);
+    }
+
+    // same contract as the SQL version: enough shared trigrams or a plain substring hit;
+    // in memory there is no statement to time out, so the budget is not needed
+    private List<TopicSuggestion> suggest(TextIndex index, Function<Snapshot, String> field, String query, int limit) {
+        Map<UUID, Double> overlap = index.overlap(query);
+        Stream<Snapshot> candidates = overlap != null
+                ? overlap.keySet().stream().map(storage::get).filter(Objects::nonNull)
+                : storage.values().stream();
+        return candidates
+                .filter(t -> !Boolean.TRUE.equals(t.deleted()))
+                .map(t -> {
+                    boolean substring = containsIgnoreCase(field.apply(t), query);
+                    double score = overlap != null ? overlap.getOrDefault(t.id(), 0.0) : substring ? 1.0 : 0.0;
+                    return score >= WORD_SIMILARITY_THRESHOLD || substring
+                            ? new TopicSuggestion(t.id(), t.title(), t.author(), t.replyCount(), t.lastPostAt(), score)
+                            : null;
+                })
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingDouble(TopicSuggestion::score).reversed()
+                        .thenComparing(TopicSuggestion::replyCount, Comparator.nullsLast(Comparator.reverseOrder()))
+                        .thenComparing(TopicSuggestion::id))
+                .limit(Math.max(limit, 0))
                 .collect(Collectors.toList());
-        return copyList(res);
+    }
+
+    // needles shorter than a trigram have no postings and fall back to a scan
+    private List<Topic> containing(TextIndex index, String needle, Predicate<Snapshot> check) {
+        Set<UUID> ids = index.candidates(needle);
+        Stream<Snapshot> candidates = ids != null
+                ? ids.stream().map(storage::get).filter(Objects::nonNull)
+                : storage.values().stream();
+        return toTopics(candidates
+                .filter(check)
+                .sorted(NEWEST_FIRST));
     }
 
     @Override
     public Optional<Topic> findById(UUID id) {
-        return Optional.ofNullable(copy(storage.get(id)));
+        return Optional.ofNullable(toTopic(storage.get(id)));
+    }
+
+    @Override
+    public Optional<Topic> findByIdWithPosts(UUID id, int postLimit) {
+        Topic topic = toTopic(storage.get(id));
+        if (topic == null) return Optional.empty();
+        topic.setPosts(postRepository.findAll(new PostQuery(null, id, null, null, null, null,
+                PostQuery.SortKey.CREATED_AT, true, 0, Math.max(postLimit, 0), null)));
+        return Optional.of(topic);
+    }
+
+    @Override
+    public Optional<Fingerprint> fingerprint(UUID id, int postLimit) {
+        return findByIdWithPosts(id, postLimit).map(Fingerprint::ofTopicWithPosts);
+    }
+
+    @Override
+    public Fingerprint fingerprintAll() {
+        return Fingerprint.ofTopics(findAll());
     }
 
     @Override
@@ -112,27 +216,61 @@ public class FakeTopicRepository implements TopicRepository {
         return storage.containsKey(id);
     }
 
+    @Override
+    public Set<UUID> findExistingIds(Collection<UUID> ids) {
+        if (ids == null || ids.isEmpty()) return Set.of();
+        return ids.stream().filter(storage::containsKey).collect(Collectors.toSet());
+    }
+
     @Override
     public Topic save(Topic topic) {
         if (topic == null) return null;
+        return store(topic.getId() != null ? topic.getId() : UUID.randomUUID(), topic);
+    }
 
-        Topic toSave = copy(topic);
-
-        if (toSave.getId() == null) {
-            toSave.setId(UUID.randomUUID());
-            if (toSave.getCreatedAt() == null) {
-                toSave.setCreatedAt(now());
-            }
-        } else {
-            if (toSave.getCreatedAt() == null) {
-                Topic old = storage.get(toSave.getId());
-                toSave.setCreatedAt(old != null && old.getCreatedAt() != null ? old.getCreatedAt() : now());
+    // the entry and its index keys change under the same map lock; counters are owned by the store
+    private Topic store(UUID id, Topic topic) {
+        Snapshot stored = storage.compute(id, (k, old) -> {
+            if (old != null && topic.getVersion() != null && !topic.getVersion().equals(old.version())) {
+                throw new OptimisticLockingFailureException("Topic " + k + " is no longer at version " + topic.getVersion());
             }
+            LocalDateTime createdAt = topic.getCreatedAt() != null ? topic.getCreatedAt()
+                    : old != null && old.createdAt() != null ? old.createdAt() : now();
+            Snapshot next = new Snapshot(k, topic.getTitle(), topic.getDescription(), topic.getAuthor(),
+                    old != null ? old.viewCount() : topic.getViewCount(),
+                    old != null ? old.replyCount() : topic.getReplyCount(),
+                    topic.getPinned(), topic.getClosed(),
+                    topic.getTags() == null ? null : Set.copyOf(topic.getTags()), topic.getDeleted(),
+                    old != null ? old.lastPostAt() : topic.getLastPostAt(),
+                    createdAt, now(), old != null ? old.version() + 1 : 0L);
+            reindex(k, old, next);
+            return next;
+        });
+        return stored.toTopic();
+    }
+
+    private void reindex(UUID id, Snapshot old, Snapshot next) {
+        byDeleted.move(old != null ? old.deleted() : null, next != null ? next.deleted() : null, id);
+        byPinned.move(old != null ? old.pinned() : null, next != null ? next.pinned() : null, id);
+        byClosed.move(old != null ? old.closed() : null, next != null ? next.closed() : null, id);
+        if (next == null) {
+            titleGrams.remove(id);
+            authorGrams.remove(id);
+            return;
         }
+        // counter updates go through here too; only re-tokenize text that actually changed
+        if (old == null || !Objects.equals(old.title(), next.title())) titleGrams.put(id, next.title());
+        if (old == null || !Objects.equals(old.author(), next.author())) authorGrams.put(id, next.author());
+    }
 
-        toSave.setUpdatedAt(now());
-        storage.put(toSave.getId(), copy(toSave));
-        return copy(toSave);
+    private boolean remove(UUID id) {
+        boolean[] removed = {false};
+        storage.computeIfPresent(id, (k, old) -> {
+            reindex(k, old, null);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
     }
 
     @Override
@@ -152,25 +290,124 @@ public class FakeTopicRepository implements TopicRepository {
         if (id == null || !storage.containsKey(id)) {
             return save(topic);
         }
-        Topic toUpdate = copy(topic);
-        Topic old = storage.get(id);
-        if (toUpdate.getCreatedAt() == null && old != null) {
-            toUpdate.setCreatedAt(old.getCreatedAt());
+        return store(id, topic);
+    }
+
+    @Override
+    public boolean incrementViewCount(UUID id) {
+        return mutate(id, t -> {
+            t.setViewCount((t.getViewCount() == null ? 0 : t.getViewCount()) + 1);
+            return t;
+        });
+    }
+
+    @Override
+    public int addViewCounts(Map<UUID, Long> deltas) {
+        if (deltas == null || deltas.isEmpty()) return 0;
+        int updated = 0;
+        for (Map.Entry<UUID, Long> e : deltas.entrySet()) {
+            boolean ok = mutate(e.getKey(), t -> {
+                t.setViewCount((int) ((t.getViewCount() == null ? 0 : t.getViewCount()) + e.getValue()));
+                return t;
+            });
+            if (ok) updated++;
         }
-        toUpdate.setUpdatedAt(now());
-        storage.put(id, copy(toUpdate));
-        return copy(toUpdate);
+        return updated;
+    }
+
+    @Override
+    public boolean removeReply(UUID id) {
+        return mutate(id, t -> {
+            t.setReplyCount(Math.max(0, (t.getReplyCount() == null ? 0 : t.getReplyCount()) - 1));
+            t.setLastPostAt(postRepository.findByTopicId(id).stream()
+                    .map(Post::getCreatedAt)
+                    .max(Comparator.naturalOrder())
+                    .orElse(null));
+            t.setUpdatedAt(now());
+            return t;
+        });
+    }
+
+    @Override
+    public int adjustReplyStats(Map<UUID, ReplyDelta> deltas) {
+        if (deltas == null || deltas.isEmpty()) return 0;
+        int updated = 0;
+        for (Map.Entry<UUID, ReplyDelta> e : deltas.entrySet()) {
+            ReplyDelta delta = e.getValue();
+            boolean ok = mutate(e.getKey(), t -> {
+                t.setReplyCount(Math.max(0, (t.getReplyCount() == null ? 0 : t.getReplyCount()) + delta.replies()));
+                if (delta.lastPostAt() != null && (t.getLastPostAt() == null || t.getLastPostAt().isBefore(delta.lastPostAt()))) {
+                    t.setLastPostAt(delta.lastPostAt());
+                }
+                t.setUpdatedAt(now());
+                return t;
+            });
+            if (ok) updated++;
+        }
+        return updated;
+    }
+
+    // atomic per-entry update that keeps the indexes in step with the entry;
+    // a change returning null leaves the entry untouched
+    private boolean mutate(UUID id, UnaryOperator<Topic> change) {
+        boolean[] changed = {false};
+        storage.computeIfPresent(id, (k, current) -> {
+            Topic changedTopic = change.apply(current.toTopic());
+            if (changedTopic == null) return current;
+            Snapshot next = Snapshot.of(changedTopic);
+            reindex(k, current, next);
+            changed[0] = true;
+            return next;
+        });
+        return changed[0];
+    }
+
+    @Override
+    public int recomputeReplyStats(Collection<UUID> ids) {
+        if (ids == null || ids.isEmpty()) return 0;
+        int updated = 0;
+        for (UUID id : ids) {
+            List<Post> posts = postRepository.findByTopicId(id);
+            LocalDateTime last = posts.stream()
+                    .map(Post::getCreatedAt)
+                    .filter(Objects::nonNull)
+                    .max(Comparator.naturalOrder())
+                    .orElse(null);
+            boolean ok = mutate(id, t -> {
+                t.setReplyCount(posts.size());
+                t.setLastPostAt(last);
+                t.setUpdatedAt(now());
+                return t;
+            });
+            if (ok) updated++;
+        }
+        return updated;
+    }
+
+    @Override
+    public List<UUID> restoreAllDeleted() {
+        List<UUID> restored = new ArrayList<>();
+        for (UUID id : storage.keySet()) {
+            boolean changed = mutate(id, t -> {
+                if (!Boolean.TRUE.equals(t.getDeleted())) return null;
+                t.setDeleted(false);
+                t.setUpdatedAt(now());
+                return t;
+            });
+            if (changed) restored.add(id);
+        }
+        return restored;
     }
 
     @Override
     public int deleteById(UUID id) {
-        return storage.remove(id) != null ? 1 : 0;
+        return remove(id) ? 1 : 0;
     }
 
     @Override
     public int delete(Topic topic) {
         if (topic == null || topic.getId() == null) return 0;
-        return storage.remove(topic.getId()) != null ? 1 : 0;
+        return remove(topic.getId()) ? 1 : 0;
     }
 
     @Override
@@ -178,7 +415,7 @@ public class FakeTopicRepository implements TopicRepository {
         if (ids == null || ids.isEmpty()) return 0;
         int removed = 0;
         for (UUID id : ids) {
-            if (storage.remove(id) != null) removed++;
+            if (remove(id)) removed++;
         }
         return removed;
     }
@@ -188,15 +425,17 @@ public class FakeTopicRepository implements TopicRepository {
         if (topics == null || topics.isEmpty()) return 0;
         int removed = 0;
         for (Topic t : topics) {
-            if (t != null && t.getId() != null && storage.remove(t.getId()) != null) removed++;
+            if (t != null && t.getId() != null && remove(t.getId())) removed++;
         }
         return removed;
     }
 
     @Override
     public int deleteAll() {
-        int size = storage.size();
-        storage.clear();
-        return size;
+        int removed = 0;
+        for (UUID id : storage.keySet()) {
+            if (remove(id)) removed++;
+        }
+        return removed;
     }
 }
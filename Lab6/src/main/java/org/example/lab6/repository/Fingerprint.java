@@ -0,0 +1,68 @@
+package org.example.lab6.repository;
+
+import org.example.lab6.entity.Post;
+import org.example.lab6.entity.Topic;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+// Change marker behind the HTTP validators. Repositories compute it with one aggregate query, the
+// factories below from already loaded objects; both sides must agree for the same data.
+// Timestamps are cut to PostgreSQL's microsecond precision so either source yields the same value.
+// version is the row version of a single entity (what If-Match is checked against), null for lists.
+public record Fingerprint(long count, LocalDateTime lastModified, long checksum, Long version) {
+
+    public Fingerprint {
+        lastModified = lastModified == null ? null : lastModified.truncatedTo(ChronoUnit.MICROS);
+    }
+
+    public Fingerprint(long count, LocalDateTime lastModified, long checksum) {
+        this(count, lastModified, checksum, null);
+    }
+
+    public static Fingerprint of(Post post) {
+        return new Fingerprint(1, post.getUpdatedAt(), post.getLikes(), post.getVersion());
+    }
+
+    // a page of posts as sent: ids and likes go into the checksum, so a row swapped in or out shows
+    // even when count and newest updated_at stay the same
+    public static Fingerprint ofPosts(Collection<Post> posts) {
+        return new Fingerprint(posts.size(),
+                latest(posts.stream().map(Post::getUpdatedAt)),
+                posts.stream().mapToLong(p -> 31L * p.getId().hashCode() + p.getLikes()).sum());
+    }
+
+    // a topic as returned by an edit, without its posts
+    public static Fingerprint ofTopic(Topic topic) {
+        return new Fingerprint(valueOf(topic.getReplyCount()), topic.getUpdatedAt(),
+                valueOf(topic.getViewCount()), topic.getVersion());
+    }
+
+    // a topic as returned by getWithPosts: its own counters plus the newest change among the embedded posts
+    public static Fingerprint ofTopicWithPosts(Topic topic) {
+        Stream<LocalDateTime> posts = topic.getPosts() == null ? Stream.empty()
+                : topic.getPosts().stream().map(Post::getUpdatedAt);
+        return new Fingerprint(valueOf(topic.getReplyCount()),
+                latest(Stream.concat(Stream.of(topic.getUpdatedAt()), posts)),
+                valueOf(topic.getViewCount()), topic.getVersion());
+    }
+
+    // every topic: view counts are flushed without touching updated_at, so their sum is part of the marker
+    public static Fingerprint ofTopics(Collection<Topic> topics) {
+        return new Fingerprint(topics.size(),
+                latest(topics.stream().map(Topic::getUpdatedAt)),
+                topics.stream().mapToLong(t -> valueOf(t.getViewCount())).sum());
+    }
+
+    static LocalDateTime latest(Stream<LocalDateTime> timestamps) {
+        return timestamps.filter(Objects::nonNull).max(Comparator.naturalOrder()).orElse(null);
+    }
+
+    private static long valueOf(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
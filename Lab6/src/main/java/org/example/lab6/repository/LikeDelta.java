@@ -0,0 +1,19 @@
+package org.example.lab6.repository;
+
+// The effect of a run of likes and unlikes on a post's counter: likes -> max(floor, likes + shift).
+// An unlike never takes the counter below zero, so a plain net delta is not enough: unlike-then-like
+// on a post at 0 ends at 1, not 0. Runs compose exactly, whatever the counter was when they started.
+public record LikeDelta(int floor, int shift) {
+
+    public static final LikeDelta LIKE = new LikeDelta(0, 1);
+    public static final LikeDelta UNLIKE = new LikeDelta(0, -1);
+
+    // this run followed by next
+    public LikeDelta then(LikeDelta next) {
+        return new LikeDelta(Math.max(next.floor, floor + next.shift), shift + next.shift);
+    }
+
+    public int applyTo(int likes) {
+        return Math.max(floor, likes + shift);
+    }
+}
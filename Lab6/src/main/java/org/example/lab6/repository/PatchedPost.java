@@ -0,0 +1,9 @@
+package org.example.lab6.repository;
+
+import org.example.lab6.entity.Post;
+
+import java.util.UUID;
+
+// previousTopicId is the topic before the update, so the caller can move reply counts without reading the row first
+public record PatchedPost(Post post, UUID previousTopicId) {
+}
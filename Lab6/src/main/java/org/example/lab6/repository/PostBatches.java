@@ -0,0 +1,121 @@
+package org.example.lab6.repository;
+
+import org.example.lab6.entity.Post;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// JDBC batches for the batch endpoint, shared by the JDBC and JPA repositories like PostgresCopy.
+// Each method sends one batch per chunk and reports, in input order, which rows were written.
+final class PostBatches {
+
+    private static final int CHUNK = 500;
+
+    private static final String INSERT = """
+            INSERT INTO posts (id, author_id, topic_id, title, content, likes, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final String UPDATE = """
+            UPDATE posts
+               SET topic_id = ?, title = ?, content = ?, updated_at = ?, version = version + 1
+             WHERE id = ? AND version = ?
+            """;
+    private static final String DELETE = "DELETE FROM posts WHERE id = ? AND version = ?";
+    private static final String ADD_LIKES = """
+            UPDATE posts p
+               SET likes = GREATEST(v.floor, p.likes + v.shift),
+                   updated_at = NOW()
+              FROM (VALUES %s) AS v(id, floor, shift)
+             WHERE p.id = v.id
+            """;
+
+    private PostBatches() {
+    }
+
+    static boolean[] insert(Connection connection, List<Post> posts) throws SQLException {
+        return batch(connection, INSERT, posts, (ps, post) -> {
+            ps.setObject(1, post.getId());
+            ps.setObject(2, post.getAuthorId());
+            ps.setObject(3, post.getTopicId(), Types.OTHER);
+            ps.setString(4, post.getTitle());
+            ps.setString(5, post.getContent());
+            ps.setInt(6, post.getLikes());
+            ps.setTimestamp(7, Timestamp.valueOf(post.getCreatedAt()));
+            ps.setTimestamp(8, Timestamp.valueOf(post.getUpdatedAt()));
+        });
+    }
+
+    // each row only lands on the version it carries
+    static boolean[] update(Connection connection, List<Post> posts) throws SQLException {
+        return batch(connection, UPDATE, posts, (ps, post) -> {
+            ps.setObject(1, post.getTopicId(), Types.OTHER);
+            ps.setString(2, post.getTitle());
+            ps.setString(3, post.getContent());
+            ps.setTimestamp(4, Timestamp.valueOf(post.getUpdatedAt()));
+            ps.setObject(5, post.getId());
+            ps.setLong(6, post.getVersion());
+        });
+    }
+
+    // like update: a row whose version moved on since it was read is left alone
+    static boolean[] delete(Connection connection, List<Post> posts) throws SQLException {
+        return batch(connection, DELETE, posts, (ps, post) -> {
+            ps.setObject(1, post.getId());
+            ps.setLong(2, post.getVersion());
+        });
+    }
+
+    // one statement per chunk; like the single-post calls it leaves version alone
+    static int addLikes(Connection connection, Map<UUID, LikeDelta> deltas) throws SQLException {
+        List<Map.Entry<UUID, LikeDelta>> entries = List.copyOf(deltas.entrySet());
+        int updated = 0;
+        for (int from = 0; from < entries.size(); from += CHUNK) {
+            List<Map.Entry<UUID, LikeDelta>> chunk = entries.subList(from, Math.min(from + CHUNK, entries.size()));
+            String sql = ADD_LIKES.formatted(String.join(", ",
+                    Collections.nCopies(chunk.size(), "(CAST(? AS uuid), CAST(? AS integer), CAST(? AS integer))")));
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    LikeDelta delta = chunk.get(i).getValue();
+                    ps.setObject(3 * i + 1, chunk.get(i).getKey());
+                    ps.setInt(3 * i + 2, delta.floor());
+                    ps.setInt(3 * i + 3, delta.shift());
+                }
+                updated += ps.executeUpdate();
+            }
+        }
+        return updated;
+    }
+
+    private static <T> boolean[] batch(Connection connection, String sql, List<T> rows, Binder<T> binder) throws SQLException {
+        boolean[] applied = new boolean[rows.size()];
+        if (rows.isEmpty()) return applied;
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int from = 0; from < rows.size(); from += CHUNK) {
+                int to = Math.min(from + CHUNK, rows.size());
+                for (T row : rows.subList(from, to)) {
+                    binder.bind(ps, row);
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    // SUCCESS_NO_INFO is what the driver reports for inserts it rewrote into one statement
+                    applied[from + i] = counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO;
+                }
+            }
+        }
+        return applied;
+    }
+
+    @FunctionalInterface
+    private interface Binder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.lab6.repository;
+
+import org.example.lab6.entity.Post;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+public record PostCursor(PostQuery.SortKey sortKey, boolean descending, Object value, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static PostCursor after(Post last, PostQuery.SortKey sortKey, boolean descending) {
+        Object value = switch (sortKey) {
+            case CREATED_AT -> last.getCreatedAt();
+            case UPDATED_AT -> last.getUpdatedAt();
+            case LIKES -> last.getLikes();
+            // raw title: each implementation lowercases both sides of the comparison itself
+            case TITLE -> last.getTitle();
+        };
+        return new PostCursor(sortKey, descending, value, last.getId());
+    }
+
+    public String encode() {
+        String raw = sortKey.name() + SEPARATOR + (descending ? "d" : "a") + SEPARATOR + id + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PostCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            PostQuery.SortKey sortKey = PostQuery.SortKey.valueOf(parts[0]);
+            UUID id = UUID.fromString(parts[2]);
+            Object value = switch (sortKey) {
+                case CREATED_AT, UPDATED_AT -> LocalDateTime.parse(parts[3]);
+                case LIKES -> Integer.valueOf(parts[3]);
+                case TITLE -> parts[3];
+            };
+            return new PostCursor(sortKey, "d".equals(parts[1]), value, id);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    public boolean matches(PostQuery.SortKey sortKey, boolean descending) {
+        return this.sortKey == sortKey && this.descending == descending;
+    }
+}
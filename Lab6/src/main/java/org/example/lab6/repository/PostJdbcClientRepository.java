@@ -1,28 +1,62 @@
 package org.example.lab6.repository;
 
 import org.example.lab6.entity.Post;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public class PostJdbcClientRepository implements PostRepository {
 
     private static final String BASE_SELECT = """
-            SELECT id, author_id, topic_id, title, content, likes, created_at, updated_at
+            SELECT id, author_id, topic_id, title, content, likes, created_at, updated_at, version
             FROM posts
             """;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    // shared with PostJpaRepository; headlines are only built for the rows of the requested page. Matches are
+    // delimited with chr(2)/chr(3) rather than markup: the text is user input, PostSearchHit escapes it
+    static final String SEARCH_SQL = """
+            SELECT p.id, p.author_id, p.topic_id, p.title, p.content, p.likes, p.created_at, p.updated_at, p.version,
+                   hits.rank,
+                   ts_headline('simple', p.title, hits.q,
+                               'HighlightAll=true, StartSel=' || chr(2) || ', StopSel=' || chr(3)) AS title_highlight,
+                   ts_headline('simple', p.content, hits.q,
+                               'MaxFragments=2, MaxWords=30, MinWords=10, StartSel=' || chr(2) || ', StopSel=' || chr(3))
+                       AS content_highlight
+              FROM (SELECT id, ts_rank(search_vector, q) AS rank, q
+                      FROM posts, websearch_to_tsquery('simple', :query) q
+                     WHERE search_vector @@ q
+                     ORDER BY rank DESC, id
+                     LIMIT :limit OFFSET :offset) hits
+              JOIN posts p ON p.id = hits.id
+             ORDER BY hits.rank DESC, hits.id
+            """;
+    static final String COUNT_SEARCH_SQL = """
+            SELECT COUNT(*) FROM posts WHERE search_vector @@ websearch_to_tsquery('simple', :query)
+            """;
 
     private final JdbcClient jdbcClient;
+    private final JdbcTemplate jdbcTemplate;
 
-    public PostJdbcClientRepository(JdbcClient jdbcClient) {
+    public PostJdbcClientRepository(JdbcClient jdbcClient, JdbcTemplate jdbcTemplate) {
         this.jdbcClient = jdbcClient;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     @Override
@@ -65,8 +99,10 @@ public class PostJdbcClientRepository implements PostRepository {
                               title = EXCLUDED.title,
                               content = EXCLUDED.content,
                               likes = EXCLUDED.likes,
-                              updated_at = EXCLUDED.updated_at
-                        RETURNING id, author_id, topic_id, title, content, likes, created_at, updated_at
+                              updated_at = EXCLUDED.updated_at,
+                              version = posts.version + 1
+                        WHERE posts.version = COALESCE(CAST(:version AS BIGINT), posts.version)
+                        RETURNING id, author_id, topic_id, title, content, likes, created_at, updated_at, version
                         """)
                 .param("id", post.getId())
                 .param("authorId", post.getAuthorId())
@@ -76,8 +112,12 @@ public class PostJdbcClientRepository implements PostRepository {
                 .param("likes", post.getLikes())
                 .param("createdAt", createdAt)
                 .param("updatedAt", updatedAt)
+                .param("version", post.getVersion())
                 .query(this::mapRow)
-                .single();
+                .optional()
+                // only a conflicting row whose version moved on returns nothing
+                .orElseThrow(() -> new OptimisticLockingFailureException(
+                        "Post " + post.getId() + " is no longer at version " + post.getVersion()));
     }
 
     @Override
@@ -103,6 +143,72 @@ public class PostJdbcClientRepository implements PostRepository {
                 .list();
     }
 
+    @Override
+    public Stream<Post> streamAll() {
+        // the driver only honours fetchSize inside a transaction, otherwise it buffers the whole result
+        return jdbcTemplate.queryForStream(con -> {
+            PreparedStatement ps = con.prepareStatement(BASE_SELECT,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            return ps;
+        }, this::mapRow);
+    }
+
+    @Override
+    public List<Post> findAll(PostQuery query) {
+        Map<String, Object> params = new HashMap<>();
+        String sql = BASE_SELECT + where(query, params)
+                + " ORDER BY " + orderBy(query)
+                + " LIMIT :limit OFFSET :offset";
+        params.put("limit", query.limit());
+        params.put("offset", query.offset());
+        return jdbcClient.sql(sql)
+                .params(params)
+                .query(this::mapRow)
+                .list();
+    }
+
+    @Override
+    public long count(PostQuery query) {
+        Map<String, Object> params = new HashMap<>();
+        return jdbcClient.sql("SELECT COUNT(*) FROM posts" + where(query, params))
+                .params(params)
+                .query(Long.class)
+                .single();
+    }
+
+    @Override
+    public Fingerprint fingerprint(PostQuery query) {
+        Map<String, Object> params = new HashMap<>();
+        return jdbcClient.sql("SELECT COUNT(*) AS n, MAX(updated_at) AS last_modified FROM posts" + where(query, params))
+                .params(params)
+                .query((rs, rowNum) -> {
+                    Timestamp lastModified = rs.getTimestamp("last_modified");
+                    return new Fingerprint(rs.getLong("n"),
+                            lastModified != null ? lastModified.toLocalDateTime() : null, 0);
+                })
+                .single();
+    }
+
+    @Override
+    public List<PostSearchHit> search(String query, int offset, int limit) {
+        return jdbcClient.sql(SEARCH_SQL)
+                .param("query", query)
+                .param("limit", limit)
+                .param("offset", offset)
+                .query((rs, rowNum) -> PostSearchHit.highlighted(mapRow(rs, rowNum), rs.getDouble("rank"),
+                        rs.getString("title_highlight"), rs.getString("content_highlight")))
+                .list();
+    }
+
+    @Override
+    public long countSearch(String query) {
+        return jdbcClient.sql(COUNT_SEARCH_SQL)
+                .param("query", query)
+                .query(Long.class)
+                .single();
+    }
+
     @Override
     public boolean incrementLikes(UUID id) {
         return jdbcClient.sql("""
@@ -133,7 +239,8 @@ public class PostJdbcClientRepository implements PostRepository {
                         UPDATE posts
                            SET title = :title,
                                content = :content,
-                               updated_at = NOW()
+                               updated_at = NOW(),
+                               version = version + 1
                          WHERE id = :id
                         """)
                 .param("id", id)
@@ -142,6 +249,149 @@ public class PostJdbcClientRepository implements PostRepository {
                 .update() > 0;
     }
 
+    @Override
+    public Optional<PatchedPost> patch(UUID id, PostPatch patch, Long expectedVersion) {
+        Map<String, Object> params = new HashMap<>();
+        return jdbcClient.sql(patchSql(id, patch, expectedVersion, params))
+                .params(params)
+                .query((rs, rowNum) -> new PatchedPost(mapRow(rs, rowNum), rs.getObject("previous_topic_id", UUID.class)))
+                .optional();
+    }
+
+    @Override
+    public long importPosts(Stream<Post> posts) {
+        Long copied = jdbcTemplate.execute((ConnectionCallback<Long>) con -> PostgresCopy.copyPosts(con, posts.iterator()));
+        return copied != null ? copied : 0;
+    }
+
+    @Override
+    public List<Post> findAllById(Collection<UUID> ids) {
+        if (ids.isEmpty()) return List.of();
+        return jdbcClient.sql(BASE_SELECT + " WHERE id IN (:ids)")
+                .param("ids", ids)
+                .query(this::mapRow)
+                .list();
+    }
+
+    @Override
+    public boolean[] insertAll(List<Post> posts) {
+        return jdbcTemplate.execute((ConnectionCallback<boolean[]>) con -> PostBatches.insert(con, posts));
+    }
+
+    @Override
+    public boolean[] updateAll(List<Post> posts) {
+        return jdbcTemplate.execute((ConnectionCallback<boolean[]>) con -> PostBatches.update(con, posts));
+    }
+
+    @Override
+    public boolean[] deleteAll(List<Post> posts) {
+        return jdbcTemplate.execute((ConnectionCallback<boolean[]>) con -> PostBatches.delete(con, posts));
+    }
+
+    @Override
+    public int addLikes(Map<UUID, LikeDelta> deltas) {
+        if (deltas.isEmpty()) return 0;
+        Integer updated = jdbcTemplate.execute((ConnectionCallback<Integer>) con -> PostBatches.addLikes(con, deltas));
+        return updated != null ? updated : 0;
+    }
+
+    // shared with ReactivePostRepository: both drivers expand :named parameters
+    static String where(PostQuery query, Map<String, Object> params) {
+        List<String> conditions = new ArrayList<>();
+        if (query.authorId() != null) {
+            conditions.add("author_id = :authorId");
+            params.put("authorId", query.authorId());
+        }
+        if (query.topicId() != null) {
+            conditions.add("topic_id = :topicId");
+            params.put("topicId", query.topicId());
+        }
+        if (query.hasTitleFilter()) {
+            // ILIKE on the raw column lets idx_posts_title_trgm serve the lookup
+            conditions.add("title ILIKE :titlePattern");
+            params.put("titlePattern", "%" + escapeLike(query.titleContains()) + "%");
+        }
+        if (query.minLikes() != null) {
+            conditions.add("likes >= :minLikes");
+            params.put("minLikes", query.minLikes());
+        }
+        if (query.createdAtFrom() != null) {
+            conditions.add("created_at >= :createdAtFrom");
+            params.put("createdAtFrom", query.createdAtFrom());
+        }
+        if (query.createdAtTo() != null) {
+            conditions.add("created_at <= :createdAtTo");
+            params.put("createdAtTo", query.createdAtTo());
+        }
+        if (query.after() != null) {
+            // row comparison walks the (sort key, id) composite index instead of skipping rows
+            String value = query.sortKey() == PostQuery.SortKey.TITLE ? "LOWER(:cursorValue)" : ":cursorValue";
+            conditions.add("(" + sortColumn(query.sortKey()) + ", id) " + (query.descending() ? "<" : ">")
+                    + " (" + value + ", :cursorId)");
+            params.put("cursorValue", query.after().value());
+            params.put("cursorId", query.after().id());
+        }
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    // shared with PostJpaRepository. The CTE locks the row and reads its topic before the UPDATE, so the
+    // previous topic comes back without a separate SELECT. FOR UPDATE waits out a concurrent edit and
+    // then reads the committed row, so previous_topic_id is never the pre-edit value, with or without
+    // a version condition. A patch that assigns nothing (only "test" operations, or an empty merge patch)
+    // checks its conditions with a locking SELECT instead, so it neither bumps the version nor updated_at.
+    static String patchSql(UUID id, PostPatch patch, Long expectedVersion, Map<String, Object> params) {
+        List<String> sets = new ArrayList<>();
+        patch.values().forEach((field, value) -> {
+            // a literal NULL, so neither driver has to guess the type of a null parameter
+            sets.add(field.column() + " = " + (value != null ? ":set_" + field.column() : "NULL"));
+            if (value != null) params.put("set_" + field.column(), value);
+        });
+        params.put("id", id);
+        StringBuilder condition = new StringBuilder();
+        if (expectedVersion != null) {
+            condition.append(" AND p.version = :version");
+            params.put("version", expectedVersion);
+        }
+        // JSON Patch "test" operations, checked by the same statement that writes
+        patch.expected().forEach((field, value) -> {
+            condition.append(" AND p.").append(field.column())
+                    .append(value != null ? " = :expect_" + field.column() : " IS NULL");
+            if (value != null) params.put("expect_" + field.column(), value);
+        });
+        if (sets.isEmpty()) {
+            return "SELECT p.id, p.author_id, p.topic_id, p.title, p.content, p.likes,"
+                    + " p.created_at, p.updated_at, p.version, p.topic_id AS previous_topic_id"
+                    + " FROM posts p WHERE p.id = :id" + condition + " FOR UPDATE";
+        }
+        sets.add("updated_at = NOW()");
+        sets.add("version = p.version + 1");
+        return "WITH old AS (SELECT id, topic_id FROM posts WHERE id = :id FOR UPDATE)"
+                + " UPDATE posts p SET " + String.join(", ", sets)
+                + " FROM old WHERE p.id = old.id" + condition
+                + " RETURNING p.id, p.author_id, p.topic_id, p.title, p.content, p.likes,"
+                + " p.created_at, p.updated_at, p.version, old.topic_id AS previous_topic_id";
+    }
+
+    static String orderBy(PostQuery query) {
+        String direction = query.descending() ? " DESC" : " ASC";
+        return sortColumn(query.sortKey()) + direction + ", id" + direction;
+    }
+
+    private static String sortColumn(PostQuery.SortKey sortKey) {
+        return switch (sortKey) {
+            case UPDATED_AT -> "updated_at";
+            case LIKES -> "likes";
+            case TITLE -> "LOWER(title)";
+            case CREATED_AT -> "created_at";
+        };
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
     private Post mapRow(ResultSet rs, int rowNum) throws SQLException {
         Post p = new Post();
         p.setId(rs.getObject("id", UUID.class));
@@ -152,6 +402,7 @@ public class PostJdbcClientRepository implements PostRepository {
         p.setLikes(rs.getInt("likes"));
         p.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
         p.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+        p.setVersion(rs.getLong("version"));
         return p;
     }
 }
@@ -1,22 +1,40 @@
 package org.example.lab6.repository;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import org.example.lab6.entity.Post;
+import org.hibernate.Session;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 @Primary
 public class PostJpaRepository implements PostRepository {
 
     private final SpringDataPostRepository repository;
+    private final EntityManager entityManager;
 
-    public PostJpaRepository(SpringDataPostRepository repository) {
+    public PostJpaRepository(SpringDataPostRepository repository, EntityManager entityManager) {
         this.repository = repository;
+        this.entityManager = entityManager;
     }
 
     @Override
@@ -60,6 +78,70 @@ public class PostJpaRepository implements PostRepository {
         return repository.findAllByOrderByCreatedAtDesc();
     }
 
+    @Override
+    public Stream<Post> streamAll() {
+        // detach each row once handed out so the persistence context does not grow with the export
+        return repository.streamAll().peek(entityManager::detach);
+    }
+
+    @Override
+    public List<Post> findAll(PostQuery query) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Post> cq = cb.createQuery(Post.class);
+        Root<Post> root = cq.from(Post.class);
+        cq.select(root)
+                .where(predicates(query, cb, root))
+                .orderBy(
+                        query.descending() ? cb.desc(sortKey(query, cb, root)) : cb.asc(sortKey(query, cb, root)),
+                        query.descending() ? cb.desc(root.get("id")) : cb.asc(root.get("id"))
+                );
+        return entityManager.createQuery(cq)
+                .setFirstResult(query.offset())
+                .setMaxResults(query.limit())
+                .getResultList();
+    }
+
+    @Override
+    public long count(PostQuery query) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        Root<Post> root = cq.from(Post.class);
+        cq.select(cb.count(root)).where(predicates(query, cb, root));
+        return entityManager.createQuery(cq).getSingleResult();
+    }
+
+    @Override
+    public Fingerprint fingerprint(PostQuery query) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> cq = cb.createQuery(Object[].class);
+        Root<Post> root = cq.from(Post.class);
+        cq.multiselect(cb.count(root), cb.greatest(root.<LocalDateTime>get("updatedAt")))
+                .where(predicates(query, cb, root));
+        Object[] row = entityManager.createQuery(cq).getSingleResult();
+        return new Fingerprint((Long) row[0], (LocalDateTime) row[1], 0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<PostSearchHit> search(String query, int offset, int limit) {
+        List<Object[]> rows = entityManager.createNativeQuery(PostJdbcClientRepository.SEARCH_SQL, Post.SEARCH_HIT_MAPPING)
+                .setParameter("query", query)
+                .setParameter("limit", limit)
+                .setParameter("offset", offset)
+                .getResultList();
+        return rows.stream()
+                .map(row -> PostSearchHit.highlighted((Post) row[0], ((Number) row[1]).doubleValue(),
+                        (String) row[2], (String) row[3]))
+                .toList();
+    }
+
+    @Override
+    public long countSearch(String query) {
+        return ((Number) entityManager.createNativeQuery(PostJdbcClientRepository.COUNT_SEARCH_SQL)
+                .setParameter("query", query)
+                .getSingleResult()).longValue();
+    }
+
     @Override
     @Transactional
     public boolean incrementLikes(UUID id) {
@@ -77,4 +159,144 @@ public class PostJpaRepository implements PostRepository {
     public boolean update(UUID id, String newTitle, String newContent) {
         return repository.updateContent(id, newTitle, newContent) > 0;
     }
+
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public Optional<PatchedPost> patch(UUID id, PostPatch patch, Long expectedVersion) {
+        Map<String, Object> params = new HashMap<>();
+        Query query = entityManager.createNativeQuery(PostJdbcClientRepository.patchSql(id, patch, expectedVersion, params));
+        params.forEach(query::setParameter);
+        // plain columns rather than an entity result: a copy of this post already in the persistence
+        // context would be handed back as is, with the state from before the UPDATE
+        List<Object[]> rows = query.getResultList();
+        return rows.stream().findFirst().map(row -> {
+            Post post = new Post();
+            post.setId((UUID) row[0]);
+            post.setAuthorId((UUID) row[1]);
+            post.setTopicId((UUID) row[2]);
+            post.setTitle((String) row[3]);
+            post.setContent((String) row[4]);
+            post.setLikes(((Number) row[5]).intValue());
+            post.setCreatedAt(toLocalDateTime(row[6]));
+            post.setUpdatedAt(toLocalDateTime(row[7]));
+            post.setVersion(((Number) row[8]).longValue());
+            return new PatchedPost(post, (UUID) row[9]);
+        });
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        return value instanceof Timestamp ts ? ts.toLocalDateTime() : (LocalDateTime) value;
+    }
+
+    @Override
+    @Transactional
+    public long importPosts(Stream<Post> posts) {
+        entityManager.flush();
+        return entityManager.unwrap(Session.class)
+                .doReturningWork(con -> PostgresCopy.copyPosts(con, posts.iterator()));
+    }
+
+    @Override
+    public List<Post> findAllById(Collection<UUID> ids) {
+        List<Post> found = new ArrayList<>(ids.size());
+        repository.findAllById(ids).forEach(found::add);
+        return found;
+    }
+
+    // the batches go through the session's connection after a flush, like importPosts; the posts they
+    // write are new Post instances, so managed copies loaded by findAllById stay untouched and clean
+    @Override
+    @Transactional
+    public boolean[] insertAll(List<Post> posts) {
+        entityManager.flush();
+        return entityManager.unwrap(Session.class).doReturningWork(con -> PostBatches.insert(con, posts));
+    }
+
+    @Override
+    @Transactional
+    public boolean[] updateAll(List<Post> posts) {
+        entityManager.flush();
+        return entityManager.unwrap(Session.class).doReturningWork(con -> PostBatches.update(con, posts));
+    }
+
+    @Override
+    @Transactional
+    public boolean[] deleteAll(List<Post> posts) {
+        entityManager.flush();
+        return entityManager.unwrap(Session.class).doReturningWork(con -> PostBatches.delete(con, posts));
+    }
+
+    @Override
+    @Transactional
+    public int addLikes(Map<UUID, LikeDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        entityManager.flush();
+        return entityManager.unwrap(Session.class).doReturningWork(con -> PostBatches.addLikes(con, deltas));
+    }
+
+    private Predicate[] predicates(PostQuery query, CriteriaBuilder cb, Root<Post> root) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (query.authorId() != null) {
+            predicates.add(cb.equal(root.get("authorId"), query.authorId()));
+        }
+        if (query.topicId() != null) {
+            predicates.add(cb.equal(root.get("topicId"), query.topicId()));
+        }
+        if (query.hasTitleFilter()) {
+            String pattern = "%" + escapeLike(query.titleContains().toLowerCase()) + "%";
+            predicates.add(cb.like(cb.lower(root.<String>get("title")), pattern, '\\'));
+        }
+        if (query.minLikes() != null) {
+            predicates.add(cb.ge(root.<Integer>get("likes"), query.minLikes()));
+        }
+        if (query.createdAtFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(root.<LocalDateTime>get("createdAt"), query.createdAtFrom()));
+        }
+        if (query.createdAtTo() != null) {
+            predicates.add(cb.lessThanOrEqualTo(root.<LocalDateTime>get("createdAt"), query.createdAtTo()));
+        }
+        if (query.after() != null) {
+            predicates.add(after(query, cb, root));
+        }
+        return predicates.toArray(Predicate[]::new);
+    }
+
+    private Predicate after(PostQuery query, CriteriaBuilder cb, Root<Post> root) {
+        PostCursor cursor = query.after();
+        return switch (query.sortKey()) {
+            case CREATED_AT -> seek(cb, root.<LocalDateTime>get("createdAt"),
+                    cb.literal((LocalDateTime) cursor.value()), root, cursor.id(), query.descending());
+            case UPDATED_AT -> seek(cb, root.<LocalDateTime>get("updatedAt"),
+                    cb.literal((LocalDateTime) cursor.value()), root, cursor.id(), query.descending());
+            case LIKES -> seek(cb, root.<Integer>get("likes"),
+                    cb.literal((Integer) cursor.value()), root, cursor.id(), query.descending());
+            case TITLE -> seek(cb, cb.lower(root.<String>get("title")),
+                    cb.lower(cb.literal((String) cursor.value())), root, cursor.id(), query.descending());
+        };
+    }
+
+    private <T extends Comparable<? super T>> Predicate seek(CriteriaBuilder cb, Expression<T> key, Expression<T> value,
+                                                            Root<Post> root, UUID lastId, boolean descending) {
+        Path<UUID> id = root.get("id");
+        if (descending) {
+            return cb.or(cb.lessThan(key, value), cb.and(cb.equal(key, value), cb.lessThan(id, lastId)));
+        }
+        return cb.or(cb.greaterThan(key, value), cb.and(cb.equal(key, value), cb.greaterThan(id, lastId)));
+    }
+
+    private Expression<?> sortKey(PostQuery query, CriteriaBuilder cb, Root<Post> root) {
+        if (query.sortKey() == PostQuery.SortKey.TITLE) {
+            return cb.lower(root.<String>get("title"));
+        }
+        return root.get(query.sortKey().property());
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
 }
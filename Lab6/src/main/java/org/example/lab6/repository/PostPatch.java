@@ -0,0 +1,52 @@
+package org.example.lab6.repository;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+// A partial update of a post: values are the columns to write (a null value writes NULL), expected the
+// columns that must still hold the given value for the update to apply. Columns in neither are left alone.
+public record PostPatch(Map<Field, Object> values, Map<Field, Object> expected) {
+
+    public enum Field {
+        TITLE("title"),
+        CONTENT("content"),
+        TOPIC_ID("topic_id"),
+        LIKES("likes");
+
+        private final String column;
+
+        Field(String column) {
+            this.column = column;
+        }
+
+        public String column() {
+            return column;
+        }
+    }
+
+    // EnumMap keeps null values, which Map.copyOf would reject
+    public PostPatch {
+        values = Collections.unmodifiableMap(values.isEmpty() ? new EnumMap<>(Field.class) : new EnumMap<>(values));
+        expected = Collections.unmodifiableMap(expected.isEmpty() ? new EnumMap<>(Field.class) : new EnumMap<>(expected));
+    }
+
+    // PUT: every editable column, a missing topicId detaches the post
+    public static PostPatch replace(UUID topicId, String title, String content) {
+        Map<Field, Object> values = new EnumMap<>(Field.class);
+        values.put(Field.TITLE, title);
+        values.put(Field.CONTENT, content);
+        values.put(Field.TOPIC_ID, topicId);
+        return new PostPatch(values, Map.of());
+    }
+
+    // merge patch: only what the client sent
+    public static PostPatch merge(UUID topicId, String title, String content) {
+        Map<Field, Object> values = new EnumMap<>(Field.class);
+        if (title != null) values.put(Field.TITLE, title);
+        if (content != null) values.put(Field.CONTENT, content);
+        if (topicId != null) values.put(Field.TOPIC_ID, topicId);
+        return new PostPatch(values, Map.of());
+    }
+}
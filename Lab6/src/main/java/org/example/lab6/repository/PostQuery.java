@@ -0,0 +1,49 @@
+package org.example.lab6.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record PostQuery(
+        UUID authorId,
+        UUID topicId,
+        String titleContains,
+        Integer minLikes,
+        LocalDateTime createdAtFrom,
+        LocalDateTime createdAtTo,
+        SortKey sortKey,
+        boolean descending,
+        int offset,
+        int limit,
+        PostCursor after
+) {
+
+    public enum SortKey {
+        CREATED_AT("createdAt"),
+        UPDATED_AT("updatedAt"),
+        LIKES("likes"),
+        TITLE("title");
+
+        private final String property;
+
+        SortKey(String property) {
+            this.property = property;
+        }
+
+        public String property() {
+            return property;
+        }
+
+        public static SortKey fromProperty(String property) {
+            for (SortKey key : values()) {
+                if (key.property.equals(property)) {
+                    return key;
+                }
+            }
+            throw new IllegalArgumentException("Unknown sort property: " + property);
+        }
+    }
+
+    public boolean hasTitleFilter() {
+        return titleContains != null && !titleContains.isBlank();
+    }
+}
@@ -3,16 +3,42 @@ package org.example.lab6.repository;
 import org.example.lab6.entity.Post;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 public interface PostRepository {
     List<Post> findByTopicId(UUID topicId);
     List<Post> findByAuthorId(UUID authorId);
     Optional<Post> findById(UUID id);
+    // an existing row is only overwritten at post.version (when set), otherwise OptimisticLockingFailureException
     Post save(Post post);
     boolean deleteById(UUID id);
     List<Post> findByTitleContaining(String keyword);
     List<Post> findAll();
+    List<Post> findAll(PostQuery query);
+    // forward-only; the caller must close the stream
+    Stream<Post> streamAll();
+    long count(PostQuery query);
+    // match count and newest updated_at of the query's filters, a cheap change marker for the result
+    Fingerprint fingerprint(PostQuery query);
+    // full-text match over title and content, best rank first
+    List<PostSearchHit> search(String query, int offset, int limit);
+    long countSearch(String query);
     boolean incrementLikes(UUID id);
     boolean decrementLikes(UUID id);
     boolean update(UUID id, String newTitle, String newContent);
+    // one UPDATE of the patched columns, conditional on expectedVersion unless it is null;
+    // empty when the post does not exist or is no longer at that version
+    Optional<PatchedPost> patch(UUID id, PostPatch patch, Long expectedVersion);
+    long importPosts(Stream<Post> posts);
+    // batch endpoint: one round trip per chunk of rows; the boolean arrays say, in input order,
+    // which rows were written
+    List<Post> findAllById(Collection<UUID> ids);
+    // ids, timestamps and likes are set by the caller
+    boolean[] insertAll(List<Post> posts);
+    // topic, title and content of each post, only at the version it carries
+    boolean[] updateAll(List<Post> posts);
+    // each post only at the version it carries
+    boolean[] deleteAll(List<Post> posts);
+    // buffered or batched likes and unlikes per post; returns the number of posts updated
+    int addLikes(Map<UUID, LikeDelta> deltas);
 }
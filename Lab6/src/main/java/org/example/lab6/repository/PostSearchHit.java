@@ -0,0 +1,25 @@
+package org.example.lab6.repository;
+
+import org.example.lab6.entity.Post;
+import org.springframework.web.util.HtmlUtils;
+
+// Highlights are HTML: the post text is escaped and each match is wrapped in <mark>...</mark>
+public record PostSearchHit(Post post, double rank, String titleHighlight, String contentHighlight) {
+
+    // the delimiters the highlighters emit around a match; control characters, so they never collide
+    // with markup and survive escaping untouched
+    static final char MATCH_START = '\u0002';
+    static final char MATCH_END = '\u0003';
+
+    static PostSearchHit highlighted(Post post, double rank, String markedTitle, String markedContent) {
+        return new PostSearchHit(post, rank, toHtml(markedTitle), toHtml(markedContent));
+    }
+
+    // escaping comes first, so the <mark> tags added afterwards are the only markup in the result
+    static String toHtml(String marked) {
+        if (marked == null) return null;
+        return HtmlUtils.htmlEscape(marked)
+                .replace(String.valueOf(MATCH_START), "<mark>")
+                .replace(String.valueOf(MATCH_END), "</mark>");
+    }
+}
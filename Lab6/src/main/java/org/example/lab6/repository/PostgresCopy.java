@@ -0,0 +1,71 @@
+package org.example.lab6.repository;
+
+import org.example.lab6.entity.Post;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+final class PostgresCopy {
+
+    private static final String COPY_POSTS = """
+            COPY posts (author_id, topic_id, title, content, likes, created_at, updated_at)
+            FROM STDIN WITH (FORMAT csv)
+            """;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private PostgresCopy() {
+    }
+
+    // Streams rows straight into COPY; nothing but the current row is held in memory
+    static long copyPosts(Connection connection, Iterator<Post> posts) throws SQLException {
+        PGCopyOutputStream out = new PGCopyOutputStream(connection.unwrap(PGConnection.class), COPY_POSTS, BUFFER_SIZE);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            while (posts.hasNext()) {
+                writeRow(writer, posts.next());
+            }
+            writer.flush();
+            return out.endCopy();
+        } catch (IOException e) {
+            throw new SQLException("COPY into posts failed", e);
+        } finally {
+            if (out.isActive()) {
+                out.cancelCopy();
+            }
+        }
+    }
+
+    private static void writeRow(Writer writer, Post post) throws IOException {
+        writer.write(plain(post.getAuthorId()));
+        writer.write(',');
+        writer.write(plain(post.getTopicId()));
+        writer.write(',');
+        writer.write(quoted(post.getTitle()));
+        writer.write(',');
+        writer.write(quoted(post.getContent()));
+        writer.write(',');
+        writer.write(Integer.toString(post.getLikes()));
+        writer.write(',');
+        writer.write(plain(post.getCreatedAt()));
+        writer.write(',');
+        writer.write(plain(post.getUpdatedAt()));
+        writer.write('\n');
+    }
+
+    // an unquoted empty field is NULL in CSV mode
+    private static String plain(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private static String quoted(String value) {
+        return value == null ? "" : '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.lab6.repository;
+
+import io.r2dbc.spi.Row;
+import org.example.lab6.entity.Post;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+@Repository
+@Profile("reactive")
+public class ReactivePostRepository {
+
+    private static final String BASE_SELECT = """
+            SELECT id, author_id, topic_id, title, content, likes, created_at, updated_at, version
+            FROM posts
+            """;
+
+    private final DatabaseClient client;
+
+    public ReactivePostRepository(DatabaseClient client) {
+        this.client = client;
+    }
+
+    public Mono<Post> findById(UUID id) {
+        return client.sql(BASE_SELECT + " WHERE id = :id")
+                .bind("id", id)
+                .map((row, meta) -> mapRow(row))
+                .one();
+    }
+
+    public Flux<Post> findByTopicId(UUID topicId) {
+        return client.sql(BASE_SELECT + " WHERE topic_id = :topicId ORDER BY created_at DESC, id DESC")
+                .bind("topicId", topicId)
+                .map((row, meta) -> mapRow(row))
+                .all();
+    }
+
+    public Flux<Post> findAll(PostQuery query) {
+        Map<String, Object> params = new HashMap<>();
+        String sql = BASE_SELECT + PostJdbcClientRepository.where(query, params)
+                + " ORDER BY " + PostJdbcClientRepository.orderBy(query)
+                + " LIMIT :limit OFFSET :offset";
+        params.put("limit", query.limit());
+        params.put("offset", query.offset());
+        return client.sql(sql)
+                .bindValues(params)
+                .map((row, meta) -> mapRow(row))
+                .all();
+    }
+
+    private static Post mapRow(Row row) {
+        Post p = new Post();
+        p.setId(row.get("id", UUID.class));
+        p.setAuthorId(row.get("author_id", UUID.class));
+        p.setTopicId(row.get("topic_id", UUID.class));
+        p.setTitle(row.get("title", String.class));
+        p.setContent(row.get("content", String.class));
+        Integer likes = row.get("likes", Integer.class);
+        p.setLikes(likes != null ? likes : 0);
+        p.setCreatedAt(row.get("created_at", LocalDateTime.class));
+        p.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+        p.setVersion(row.get("version", Long.class));
+        return p;
+    }
+}
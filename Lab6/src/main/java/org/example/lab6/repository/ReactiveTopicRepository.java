@@ -0,0 +1,72 @@
+package org.example.lab6.repository;
+
+import io.r2dbc.spi.Row;
+import org.example.lab6.entity.Topic;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+@Repository
+@Profile("reactive")
+public class ReactiveTopicRepository {
+
+    private static final String BASE_SELECT = """
+            SELECT id, title, description, author, view_count, reply_count,
+                   pinned, closed, tags, deleted, last_post_at, created_at, updated_at, version
+              FROM topics
+            """;
+
+    private final DatabaseClient client;
+
+    public ReactiveTopicRepository(DatabaseClient client) {
+        this.client = client;
+    }
+
+    public Mono<Topic> findById(UUID id) {
+        return client.sql(BASE_SELECT + " WHERE id = :id")
+                .bind("id", id)
+                .map((row, meta) -> mapRow(row))
+                .one();
+    }
+
+    public Flux<Topic> findAll(int offset, int limit) {
+        return client.sql(BASE_SELECT + " ORDER BY created_at DESC, id DESC LIMIT :limit OFFSET :offset")
+                .bind("limit", limit)
+                .bind("offset", offset)
+                .map((row, meta) -> mapRow(row))
+                .all();
+    }
+
+    private static Topic mapRow(Row row) {
+        Topic t = new Topic();
+        t.setId(row.get("id", UUID.class));
+        t.setTitle(row.get("title", String.class));
+        t.setDescription(row.get("description", String.class));
+        t.setAuthor(row.get("author", String.class));
+        t.setViewCount(row.get("view_count", Integer.class));
+        t.setReplyCount(row.get("reply_count", Integer.class));
+        t.setPinned(row.get("pinned", Boolean.class));
+        t.setClosed(row.get("closed", Boolean.class));
+        t.setDeleted(row.get("deleted", Boolean.class));
+        String[] tags = row.get("tags", String[].class);
+        if (tags != null) {
+            Set<String> tagSet = new HashSet<>();
+            for (String s : tags) {
+                if (s != null) tagSet.add(s);
+            }
+            t.setTags(tagSet);
+        }
+        t.setLastPostAt(row.get("last_post_at", LocalDateTime.class));
+        t.setCreatedAt(row.get("created_at", LocalDateTime.class));
+        t.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+        t.setVersion(row.get("version", Long.class));
+        return t;
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.lab6.repository;
+
+import java.time.LocalDateTime;
+
+// net change to a topic's reply stats from one batch; lastPostAt is null when no post arrived
+public record ReplyDelta(int replies, LocalDateTime lastPostAt) {
+
+    public ReplyDelta plus(int replies, LocalDateTime postTime) {
+        LocalDateTime latest = lastPostAt == null || (postTime != null && postTime.isAfter(lastPostAt)) ? postTime : lastPostAt;
+        return new ReplyDelta(this.replies + replies, latest);
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.lab6.repository;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// key -> ids for the in-memory repositories; callers serialize changes per id, readers re-check the entity
+final class SecondaryIndex<K> {
+
+    private final Map<K, Set<UUID>> entries = new ConcurrentHashMap<>();
+
+    void add(K key, UUID id) {
+        if (key == null) return;
+        entries.compute(key, (k, ids) -> {
+            Set<UUID> target = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            target.add(id);
+            return target;
+        });
+    }
+
+    void remove(K key, UUID id) {
+        if (key == null) return;
+        entries.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    void move(K oldKey, K newKey, UUID id) {
+        if (Objects.equals(oldKey, newKey)) return;
+        remove(oldKey, id);
+        add(newKey, id);
+    }
+
+    Set<UUID> get(K key) {
+        if (key == null) return Set.of();
+        Set<UUID> ids = entries.get(key);
+        return ids != null ? ids : Set.of();
+    }
+}
@@ -1,14 +1,20 @@
 package org.example.lab6.repository;
 
+import jakarta.persistence.QueryHint;
 import org.example.lab6.entity.Post;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface SpringDataPostRepository extends CrudRepository<Post, UUID> {
@@ -30,6 +36,14 @@ public interface SpringDataPostRepository extends CrudRepository<Post, UUID> {
     // Derived sorter
     List<Post> findAllByOrderByCreatedAtDesc();
 
+    // Forward-only stream for exports
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Post p")
+    Stream<Post> streamAll();
+
     @Modifying
     @Query("update Post p set p.likes = p.likes + 1, p.updatedAt = CURRENT_TIMESTAMP where p.id = :id")
     int incrementLikes(@Param("id") UUID id);
@@ -44,6 +58,10 @@ public interface SpringDataPostRepository extends CrudRepository<Post, UUID> {
     int decrementLikes(@Param("id") UUID id);
 
     @Modifying
-    @Query("update Post p set p.title = :title, p.content = :content, p.updatedAt = CURRENT_TIMESTAMP where p.id = :id")
+    @Query("""
+            update Post p
+               set p.title = :title, p.content = :content, p.updatedAt = CURRENT_TIMESTAMP, p.version = p.version + 1
+             where p.id = :id
+            """)
     int updateContent(@Param("id") UUID id, @Param("title") String title, @Param("content") String content);
 }
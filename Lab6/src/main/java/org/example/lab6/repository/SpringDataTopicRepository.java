@@ -1,17 +1,33 @@
 package org.example.lab6.repository;
 
+import jakarta.persistence.QueryHint;
 import org.example.lab6.entity.Topic;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface SpringDataTopicRepository extends CrudRepository<Topic, UUID> {
 
+    // Forward-only stream for exports
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select t from Topic t")
+    Stream<Topic> streamAll();
+
     // JPQL with @Query
     @Query("select t from Topic t where t.deleted = :deleted order by t.createdAt desc")
     List<Topic> findAllDeleted(@Param("deleted") Boolean deleted);
@@ -22,9 +38,37 @@ public interface SpringDataTopicRepository extends CrudRepository<Topic, UUID> {
     // Derived queries
     List<Topic> findAllByClosedOrderByCreatedAtDesc(Boolean closed);
 
-    List<Topic> findAllByTitleContainingIgnoreCaseOrderByCreatedAtDesc(String title);
+    // ilike on the bare column, unlike derived ContainingIgnoreCase (upper(..) like upper(..)),
+    // can be served by the trigram indexes
+    @Query("select t from Topic t where t.title ilike concat('%', :title, '%') order by t.createdAt desc")
+    List<Topic> searchByTitle(@Param("title") String title);
 
-    List<Topic> findAllByAuthorContainingIgnoreCaseOrderByCreatedAtDesc(String author);
+    @Query("select t from Topic t where t.author ilike concat('%', :author, '%') order by t.createdAt desc")
+    List<Topic> searchByAuthor(@Param("author") String author);
 
     List<Topic> findAllByOrderByCreatedAtDesc();
+
+    // Entity join instead of JOIN FETCH: a fetched collection cannot be limited in SQL
+    @Query("""
+            select t, p from Topic t
+              left join Post p on p.topicId = t.id
+             where t.id = :id
+             order by p.createdAt desc, p.id desc
+            """)
+    List<Object[]> findWithPosts(@Param("id") UUID id, Pageable pageable);
+
+    @Modifying
+    @Query("update Topic t set t.viewCount = t.viewCount + 1 where t.id = :id")
+    int incrementViewCount(@Param("id") UUID id);
+
+    // flushed first, so a post removed in the same transaction is already gone from the subquery
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            update Topic t
+               set t.replyCount = case when t.replyCount > 0 then t.replyCount - 1 else 0 end,
+                   t.lastPostAt = (select max(p.createdAt) from Post p where p.topicId = t.id),
+                   t.updatedAt = CURRENT_TIMESTAMP
+             where t.id = :id
+            """)
+    int removeReply(@Param("id") UUID id);
 }
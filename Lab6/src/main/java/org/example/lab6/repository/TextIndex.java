@@ -0,0 +1,124 @@
+package org.example.lab6.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+// Inverted index for the in-memory repositories: token -> ids, kept up to date by put/remove.
+// Same contract as SecondaryIndex: callers serialize changes per id, readers re-check the entity.
+final class TextIndex {
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int GRAM = 3;
+
+    private final Function<String, Set<String>> tokenizer;
+    private final SecondaryIndex<String> postings = new SecondaryIndex<>();
+    // tokens each id is currently indexed under, so an update only touches the postings that changed
+    private final Map<UUID, Set<String>> indexed = new ConcurrentHashMap<>();
+
+    private TextIndex(Function<String, Set<String>> tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    // whole words, for full-text search
+    static TextIndex words() {
+        return new TextIndex(text -> new LinkedHashSet<>(words(text)));
+    }
+
+    // overlapping 3-character grams of the lowercased text, for substring search
+    static TextIndex trigrams() {
+        return new TextIndex(TextIndex::trigrams);
+    }
+
+    void put(UUID id, String text) {
+        Set<String> next = tokenizer.apply(text);
+        Set<String> prev = next.isEmpty() ? indexed.remove(id) : indexed.put(id, next);
+        if (prev == null) prev = Set.of();
+        for (String token : prev) {
+            if (!next.contains(token)) postings.remove(token, id);
+        }
+        for (String token : next) {
+            if (!prev.contains(token)) postings.add(token, id);
+        }
+    }
+
+    void remove(UUID id) {
+        Set<String> prev = indexed.remove(id);
+        if (prev != null) {
+            prev.forEach(token -> postings.remove(token, id));
+        }
+    }
+
+    // ids indexed under every token of the query; null when the query has no tokens
+    // (e.g. a substring shorter than a gram) and the caller has to scan instead
+    Set<UUID> candidates(String query) {
+        Set<String> tokens = query == null ? Set.of() : tokenizer.apply(query);
+        return tokens.isEmpty() ? null : intersect(tokens);
+    }
+
+    // id -> share of the query's tokens it is indexed under, for every id sharing at least one;
+    // null when the query has no tokens, as in candidates()
+    Map<UUID, Double> overlap(String query) {
+        Set<String> tokens = query == null ? Set.of() : tokenizer.apply(query);
+        if (tokens.isEmpty()) return null;
+        Map<UUID, Integer> shared = new HashMap<>();
+        for (String token : tokens) {
+            for (UUID id : postings.get(token)) {
+                shared.merge(id, 1, Integer::sum);
+            }
+        }
+        Map<UUID, Double> overlap = new HashMap<>(shared.size());
+        shared.forEach((id, n) -> overlap.put(id, (double) n / tokens.size()));
+        return overlap;
+    }
+
+    private Set<UUID> intersect(Collection<String> tokens) {
+        List<Set<UUID>> lists = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            Set<UUID> ids = postings.get(token);
+            if (ids.isEmpty()) return Set.of();
+            lists.add(ids);
+        }
+        // walk the shortest posting list and probe the others
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<UUID> result = new HashSet<>();
+        outer:
+        for (UUID id : lists.get(0)) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(id)) continue outer;
+            }
+            result.add(id);
+        }
+        return result;
+    }
+
+    static List<String> words(String text) {
+        if (text == null || text.isBlank()) return List.of();
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) words.add(word);
+        }
+        return words;
+    }
+
+    private static Set<String> trigrams(String text) {
+        if (text == null || text.length() < GRAM) return Set.of();
+        String lower = text.toLowerCase(Locale.ROOT);
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= lower.length(); i++) {
+            grams.add(lower.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
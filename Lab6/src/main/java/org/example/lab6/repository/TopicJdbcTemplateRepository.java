@@ -1,31 +1,122 @@
 package org.example.lab6.repository;
 
+import org.example.lab6.entity.Post;
 import org.example.lab6.entity.Topic;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Array;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 public class TopicJdbcTemplateRepository implements TopicRepository {
 
+    private static final int VALUES_CHUNK = 1000;
+    // shared with TopicJpaRepository; GREATEST skips the NULL of a delta without new posts
+    static final String ADJUST_REPLY_STATS = """
+            UPDATE topics t
+               SET reply_count = GREATEST(0, t.reply_count + v.replies),
+                   last_post_at = GREATEST(t.last_post_at, v.last_post_at),
+                   updated_at = NOW()
+              FROM (VALUES %s) AS v(id, replies, last_post_at)
+             WHERE t.id = v.id
+            """;
+    private static final int BATCH_SIZE = 500;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
     private static final String BASE_SELECT = """
             SELECT pk, id, title, description, author, view_count, reply_count,
-                   pinned, closed, tags, deleted, last_post_at, created_at, updated_at
+                   pinned, closed, tags, deleted, last_post_at, created_at, updated_at, version
               FROM topics
             """;
 
+    private static final String SELECT_WITH_POSTS = """
+            SELECT t.pk, t.id, t.title, t.description, t.author, t.view_count, t.reply_count,
+                   t.pinned, t.closed, t.tags, t.deleted, t.last_post_at, t.created_at, t.updated_at, t.version,
+                   p.id AS post_id, p.author_id AS post_author_id, p.title AS post_title,
+                   p.content AS post_content, p.likes AS post_likes,
+                   p.created_at AS post_created_at, p.updated_at AS post_updated_at, p.version AS post_version
+              FROM topics t
+              LEFT JOIN LATERAL (
+                    SELECT id, author_id, title, content, likes, created_at, updated_at, version
+                      FROM posts
+                     WHERE topic_id = t.id
+                     ORDER BY created_at DESC, id DESC
+                     LIMIT ?
+              ) p ON TRUE
+             WHERE t.id = ?
+             ORDER BY p.created_at DESC, p.id DESC
+            """;
+
+    private static final String UPSERT = """
+            INSERT INTO topics (id, title, description, author, view_count, reply_count,
+                                pinned, closed, tags, deleted, last_post_at, created_at, updated_at)
+            VALUES (COALESCE(?, gen_random_uuid()), ?, ?, ?, COALESCE(?, 0), COALESCE(?, 0),
+                    COALESCE(?, FALSE), COALESCE(?, FALSE), ?, COALESCE(?, FALSE), ?, ?, ?)
+            ON CONFLICT (id) DO UPDATE
+              SET title = EXCLUDED.title,
+                  description = EXCLUDED.description,
+                  author = EXCLUDED.author,
+                  pinned = EXCLUDED.pinned,
+                  closed = EXCLUDED.closed,
+                  tags = EXCLUDED.tags,
+                  deleted = EXCLUDED.deleted,
+                  updated_at = EXCLUDED.updated_at,
+                  version = topics.version + 1
+            WHERE topics.version = COALESCE(CAST(? AS BIGINT), topics.version)
+            """;
+
+    // shared with TopicJpaRepository: %1$s is a fixed column name, %2$s..%4$s the query, pattern and limit
+    // placeholders in the caller's parameter style. <% is word similarity above
+    // pg_trgm.word_similarity_threshold, ILIKE keeps plain substring hits scoring below it;
+    // both are served by the trigram indexes.
+    static final String SUGGEST = """
+            SELECT id, title, author, reply_count, last_post_at, word_similarity(%2$s, %1$s) AS score
+              FROM topics
+             WHERE NOT deleted
+               AND (%2$s <%% %1$s OR %1$s ILIKE %3$s)
+             ORDER BY score DESC, reply_count DESC, id
+             LIMIT %4$s
+            """;
+
+    // shared with TopicJpaRepository: %1$s is the post limit placeholder, %2$s the topic id one.
+    // Only the posts findByIdWithPosts would embed count, found through idx_posts_topic.
+    static final String FINGERPRINT = """
+            SELECT t.reply_count, t.view_count, t.version,
+                   GREATEST(t.updated_at, (SELECT MAX(p.updated_at)
+                                             FROM (SELECT updated_at
+                                                     FROM posts
+                                                    WHERE topic_id = t.id
+                                                    ORDER BY created_at DESC, id DESC
+                                                    LIMIT %1$s) p)) AS last_modified
+              FROM topics t
+             WHERE t.id = %2$s
+            """;
+    static final String FINGERPRINT_ALL = """
+            SELECT COUNT(*), MAX(updated_at), COALESCE(SUM(view_count), 0) FROM topics
+            """;
+
     private final JdbcTemplate jdbcTemplate;
     private final RowMapper<Topic> rowMapper = this::mapTopic;
 
@@ -38,6 +129,16 @@ public class TopicJdbcTemplateRepository implements TopicRepository {
         return jdbcTemplate.query(BASE_SELECT + " ORDER BY created_at DESC", rowMapper);
     }
 
+    @Override
+    public Stream<Topic> streamAll() {
+        return jdbcTemplate.queryForStream(con -> {
+            PreparedStatement ps = con.prepareStatement(BASE_SELECT,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            return ps;
+        }, rowMapper);
+    }
+
     @Override
     public List<Topic> findAllDeleted(Boolean deleted) {
         return jdbcTemplate.query(BASE_SELECT + " WHERE deleted = ? ORDER BY created_at DESC", rowMapper, deleted);
@@ -69,33 +170,139 @@ public class TopicJdbcTemplateRepository implements TopicRepository {
                 param);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<TopicSuggestion> suggestByTitle(String query, int limit, Duration budget) {
+        return suggest("title", query, limit, budget);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TopicSuggestion> suggestByAuthor(String query, int limit, Duration budget) {
+        return suggest("author", query, limit, budget);
+    }
+
+    private List<TopicSuggestion> suggest(String column, String query, int limit, Duration budget) {
+        // local to the transaction, so the pooled connection goes back with its default timeout
+        jdbcTemplate.queryForObject("SELECT set_config('statement_timeout', ?, true)",
+                String.class, String.valueOf(budget.toMillis()));
+        return jdbcTemplate.query(SUGGEST.formatted(column, "?", "?", "?"),
+                (rs, rowNum) -> new TopicSuggestion(
+                        rs.getObject("id", UUID.class),
+                        rs.getString("title"),
+                        rs.getString("author"),
+                        rs.getInt("reply_count"),
+                        rs.getObject("last_post_at", LocalDateTime.class),
+                        rs.getDouble("score")),
+                query, query, "%" + escapeLike(query) + "%", limit);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
     @Override
     public Optional<Topic> findById(UUID id) {
         List<Topic> res = jdbcTemplate.query(BASE_SELECT + " WHERE id = ?", rowMapper, id);
         return res.stream().findFirst();
     }
 
+    @Override
+    public Optional<Topic> findByIdWithPosts(UUID id, int postLimit) {
+        return jdbcTemplate.query(SELECT_WITH_POSTS, rs -> {
+            Topic topic = null;
+            List<Post> posts = new ArrayList<>();
+            while (rs.next()) {
+                if (topic == null) {
+                    topic = mapTopic(rs, 0);
+                }
+                UUID postId = rs.getObject("post_id", UUID.class);
+                if (postId != null) {
+                    posts.add(mapPost(rs, postId, topic.getId()));
+                }
+            }
+            if (topic == null) {
+                return Optional.<Topic>empty();
+            }
+            topic.setPosts(posts);
+            return Optional.of(topic);
+        }, Math.max(postLimit, 0), id);
+    }
+
+    @Override
+    public Optional<Fingerprint> fingerprint(UUID id, int postLimit) {
+        return jdbcTemplate.query(FINGERPRINT.formatted("?", "?"),
+                        (rs, rowNum) -> new Fingerprint(rs.getLong("reply_count"),
+                                rs.getObject("last_modified", LocalDateTime.class), rs.getLong("view_count"),
+                                rs.getLong("version")),
+                        Math.max(postLimit, 0), id)
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public Fingerprint fingerprintAll() {
+        return jdbcTemplate.queryForObject(FINGERPRINT_ALL,
+                (rs, rowNum) -> new Fingerprint(rs.getLong(1), rs.getObject(2, LocalDateTime.class), rs.getLong(3)));
+    }
+
     @Override
     public boolean existsById(UUID id) {
         Integer count = jdbcTemplate.queryForObject("SELECT COUNT(1) FROM topics WHERE id = ?", Integer.class, id);
         return count != null && count > 0;
     }
 
+    @Override
+    public Set<UUID> findExistingIds(Collection<UUID> ids) {
+        if (ids == null || ids.isEmpty()) return Set.of();
+        return new HashSet<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT id FROM topics WHERE id = ANY(?)");
+            ps.setArray(1, con.createArrayOf("uuid", ids.toArray(new UUID[0])));
+            return ps;
+        }, (rs, rowNum) -> rs.getObject(1, UUID.class)));
+    }
+
     @Override
     public Topic save(Topic topic) {
         return upsert(topic);
     }
 
     @Override
+    @Transactional
     public List<Topic> saveAll(List<Topic> topics) {
-        List<Topic> saved = new ArrayList<>();
         if (topics == null || topics.isEmpty()) {
-            return saved;
+            return new ArrayList<>();
         }
-        for (Topic t : topics) {
-            saved.add(upsert(t));
+        // ids are assigned up front so the batch needs no RETURNING and can be re-read in one query
+        List<Topic> batch = topics.stream().filter(Objects::nonNull).toList();
+        batch.stream().filter(t -> t.getId() == null).forEach(t -> t.setId(UUID.randomUUID()));
+        LocalDateTime now = LocalDateTime.now();
+        int[][] counts = jdbcTemplate.batchUpdate(UPSERT, batch, BATCH_SIZE, (ps, t) -> bindUpsert(ps, t, now));
+        // as in upsert(): a conflicting row whose version moved on is skipped and counts 0
+        int index = 0;
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                Topic topic = batch.get(index++);
+                if (count == 0) {
+                    throw new OptimisticLockingFailureException(
+                            "Topic " + topic.getId() + " is no longer at version " + topic.getVersion());
+                }
+            }
         }
-        return saved;
+
+        List<UUID> ids = batch.stream().map(Topic::getId).toList();
+        Map<UUID, Topic> stored = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(BASE_SELECT + " WHERE id = ANY(?)");
+            ps.setArray(1, con.createArrayOf("uuid", ids.toArray(new UUID[0])));
+            return ps;
+        }, rs -> {
+            Topic t = mapTopic(rs, 0);
+            stored.put(t.getId(), t);
+        });
+        return ids.stream().map(stored::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     @Override
@@ -103,6 +310,92 @@ public class TopicJdbcTemplateRepository implements TopicRepository {
         return upsert(topic);
     }
 
+    @Override
+    public boolean incrementViewCount(UUID id) {
+        return jdbcTemplate.update("UPDATE topics SET view_count = view_count + 1 WHERE id = ?", id) > 0;
+    }
+
+    @Override
+    public int addViewCounts(Map<UUID, Long> deltas) {
+        if (deltas == null || deltas.isEmpty()) return 0;
+        List<Map.Entry<UUID, Long>> entries = new ArrayList<>(deltas.entrySet());
+        int updated = 0;
+        for (int from = 0; from < entries.size(); from += VALUES_CHUNK) {
+            List<Map.Entry<UUID, Long>> chunk = entries.subList(from, Math.min(from + VALUES_CHUNK, entries.size()));
+            Object[] args = new Object[chunk.size() * 2];
+            for (int i = 0; i < chunk.size(); i++) {
+                args[2 * i] = chunk.get(i).getKey();
+                args[2 * i + 1] = chunk.get(i).getValue();
+            }
+            updated += jdbcTemplate.update("""
+                    UPDATE topics t
+                       SET view_count = t.view_count + v.delta
+                      FROM (VALUES %s) AS v(id, delta)
+                     WHERE t.id = v.id
+                    """.formatted(String.join(", ", Collections.nCopies(chunk.size(), "(CAST(? AS uuid), CAST(? AS bigint))"))),
+                    args);
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean removeReply(UUID id) {
+        return jdbcTemplate.update("""
+                UPDATE topics
+                   SET reply_count = GREATEST(0, reply_count - 1),
+                       last_post_at = (SELECT MAX(created_at) FROM posts WHERE topic_id = topics.id),
+                       updated_at = NOW()
+                 WHERE id = ?
+                """, id) > 0;
+    }
+
+    @Override
+    public int recomputeReplyStats(Collection<UUID> ids) {
+        if (ids == null || ids.isEmpty()) return 0;
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement("""
+                    UPDATE topics t
+                       SET reply_count = s.replies,
+                           last_post_at = s.last_post_at,
+                           updated_at = NOW()
+                      FROM (SELECT topic_id, COUNT(*) AS replies, MAX(created_at) AS last_post_at
+                              FROM posts
+                             WHERE topic_id = ANY(?)
+                             GROUP BY topic_id) s
+                     WHERE t.id = s.topic_id
+                    """);
+            ps.setArray(1, con.createArrayOf("uuid", ids.toArray(new UUID[0])));
+            return ps;
+        });
+    }
+
+    @Override
+    public int adjustReplyStats(Map<UUID, ReplyDelta> deltas) {
+        if (deltas == null || deltas.isEmpty()) return 0;
+        List<Map.Entry<UUID, ReplyDelta>> entries = new ArrayList<>(deltas.entrySet());
+        int updated = 0;
+        for (int from = 0; from < entries.size(); from += VALUES_CHUNK) {
+            List<Map.Entry<UUID, ReplyDelta>> chunk = entries.subList(from, Math.min(from + VALUES_CHUNK, entries.size()));
+            Object[] args = new Object[chunk.size() * 3];
+            for (int i = 0; i < chunk.size(); i++) {
+                args[3 * i] = chunk.get(i).getKey();
+                args[3 * i + 1] = chunk.get(i).getValue().replies();
+                args[3 * i + 2] = chunk.get(i).getValue().lastPostAt();
+            }
+            updated += jdbcTemplate.update(ADJUST_REPLY_STATS.formatted(String.join(", ",
+                    Collections.nCopies(chunk.size(), "(CAST(? AS uuid), CAST(? AS integer), CAST(? AS timestamp))"))),
+                    args);
+        }
+        return updated;
+    }
+
+    @Override
+    public List<UUID> restoreAllDeleted() {
+        return jdbcTemplate.queryForList(
+                "UPDATE topics SET deleted = FALSE, updated_at = NOW() WHERE deleted RETURNING id",
+                UUID.class);
+    }
+
     @Override
     public int deleteById(UUID id) {
         return jdbcTemplate.update("DELETE FROM topics WHERE id = ?", id);
@@ -143,46 +436,37 @@ public class TopicJdbcTemplateRepository implements TopicRepository {
     private Topic upsert(Topic topic) {
         if (topic == null) return null;
 
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime createdAt = topic.getCreatedAt() != null ? topic.getCreatedAt() : now;
-        LocalDateTime updatedAt = topic.getUpdatedAt() != null ? topic.getUpdatedAt() : now;
-
-        return jdbcTemplate.query(con -> {
-            PreparedStatement ps = con.prepareStatement("""
-                    INSERT INTO topics (id, title, description, author, view_count, reply_count,
-                                        pinned, closed, tags, deleted, last_post_at, created_at, updated_at)
-                    VALUES (COALESCE(?, gen_random_uuid()), ?, ?, ?, COALESCE(?, 0), COALESCE(?, 0),
-                            COALESCE(?, FALSE), COALESCE(?, FALSE), ?, COALESCE(?, FALSE), ?, ?, ?)
-                    ON CONFLICT (id) DO UPDATE
-                      SET title = EXCLUDED.title,
-                          description = EXCLUDED.description,
-                          author = EXCLUDED.author,
-                          view_count = EXCLUDED.view_count,
-                          reply_count = EXCLUDED.reply_count,
-                          pinned = EXCLUDED.pinned,
-                          closed = EXCLUDED.closed,
-                          tags = EXCLUDED.tags,
-                          deleted = EXCLUDED.deleted,
-                          last_post_at = EXCLUDED.last_post_at,
-                          updated_at = EXCLUDED.updated_at
+        Topic stored = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(UPSERT + """
                     RETURNING pk, id, title, description, author, view_count, reply_count,
-                              pinned, closed, tags, deleted, last_post_at, created_at, updated_at
+                              pinned, closed, tags, deleted, last_post_at, created_at, updated_at, version
                     """);
-            ps.setObject(1, topic.getId());
-            ps.setString(2, topic.getTitle());
-            ps.setString(3, topic.getDescription());
-            ps.setString(4, topic.getAuthor());
-            ps.setObject(5, topic.getViewCount());
-            ps.setObject(6, topic.getReplyCount());
-            ps.setObject(7, topic.getPinned());
-            ps.setObject(8, topic.getClosed());
-            ps.setArray(9, toSqlArray(con, topic.getTags()));
-            ps.setObject(10, topic.getDeleted());
-            ps.setObject(11, topic.getLastPostAt());
-            ps.setObject(12, createdAt);
-            ps.setObject(13, updatedAt);
+            bindUpsert(ps, topic, LocalDateTime.now());
             return ps;
         }, rs -> rs.next() ? mapTopic(rs, 1) : null);
+        // only a conflicting row whose version moved on returns nothing
+        if (stored == null) {
+            throw new OptimisticLockingFailureException(
+                    "Topic " + topic.getId() + " is no longer at version " + topic.getVersion());
+        }
+        return stored;
+    }
+
+    private void bindUpsert(PreparedStatement ps, Topic topic, LocalDateTime now) throws SQLException {
+        ps.setObject(1, topic.getId());
+        ps.setString(2, topic.getTitle());
+        ps.setString(3, topic.getDescription());
+        ps.setString(4, topic.getAuthor());
+        ps.setObject(5, topic.getViewCount());
+        ps.setObject(6, topic.getReplyCount());
+        ps.setObject(7, topic.getPinned());
+        ps.setObject(8, topic.getClosed());
+        ps.setArray(9, toSqlArray(ps.getConnection(), topic.getTags()));
+        ps.setObject(10, topic.getDeleted());
+        ps.setObject(11, topic.getLastPostAt());
+        ps.setObject(12, topic.getCreatedAt() != null ? topic.getCreatedAt() : now);
+        ps.setObject(13, topic.getUpdatedAt() != null ? topic.getUpdatedAt() : now);
+        ps.setObject(14, topic.getVersion(), Types.BIGINT);
     }
 
     private Array toSqlArray(java.sql.Connection connection, Set<String> tags) throws SQLException {
@@ -190,6 +474,20 @@ public class TopicJdbcTemplateRepository implements TopicRepository {
         return connection.createArrayOf("text", tags.toArray(new String[0]));
     }
 
+    private Post mapPost(ResultSet rs, UUID postId, UUID topicId) throws SQLException {
+        Post p = new Post();
+        p.setId(postId);
+        p.setTopicId(topicId);
+        p.setAuthorId(rs.getObject("post_author_id", UUID.class));
+        p.setTitle(rs.getString("post_title"));
+        p.setContent(rs.getString("post_content"));
+        p.setLikes(rs.getInt("post_likes"));
+        p.setCreatedAt(rs.getTimestamp("post_created_at").toLocalDateTime());
+        p.setUpdatedAt(rs.getTimestamp("post_updated_at").toLocalDateTime());
+        p.setVersion(rs.getLong("post_version"));
+        return p;
+    }
+
     private Topic mapTopic(ResultSet rs, int rowNum) throws SQLException {
         Topic t = new Topic();
         t.setId(rs.getObject("id", UUID.class));
@@ -217,6 +515,7 @@ public class TopicJdbcTemplateRepository implements TopicRepository {
 
         t.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
         t.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+        t.setVersion(rs.getLong("version"));
         return t;
     }
 }
@@ -1,25 +1,43 @@
 package org.example.lab6.repository;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.example.lab6.entity.Post;
 import org.example.lab6.entity.Topic;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @Repository
 @Primary
 public class TopicJpaRepository implements TopicRepository {
 
+    private static final int VALUES_CHUNK = 1000;
+
     private final SpringDataTopicRepository repository;
+    private final EntityManager entityManager;
 
-    public TopicJpaRepository(SpringDataTopicRepository repository) {
+    public TopicJpaRepository(SpringDataTopicRepository repository, EntityManager entityManager) {
         this.repository = repository;
+        this.entityManager = entityManager;
     }
 
     @Override
@@ -27,6 +45,14 @@ public class TopicJpaRepository implements TopicRepository {
         return repository.findAllByOrderByCreatedAtDesc();
     }
 
+    @Override
+    public Stream<Topic> streamAll() {
+        return repository.streamAll().peek(topic -> {
+            entityManager.detach(topic);
+            topic.setPosts(null);
+        });
+    }
+
     @Override
     public List<Topic> findAllDeleted(Boolean deleted) {
         return repository.findAllDeleted(deleted);
@@ -44,12 +70,52 @@ public class TopicJpaRepository implements TopicRepository {
 
     @Override
     public List<Topic> findAllByTitle(String title) {
-        return repository.findAllByTitleContainingIgnoreCaseOrderByCreatedAtDesc(title);
+        return repository.searchByTitle(title);
     }
 
     @Override
     public List<Topic> findAllByAuthor(String author) {
-        return repository.findAllByAuthorContainingIgnoreCaseOrderByCreatedAtDesc(author);
+        return repository.searchByAuthor(author);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TopicSuggestion> suggestByTitle(String query, int limit, Duration budget) {
+        return suggest("title", query, limit, budget);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TopicSuggestion> suggestByAuthor(String query, int limit, Duration budget) {
+        return suggest("author", query, limit, budget);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<TopicSuggestion> suggest(String column, String query, int limit, Duration budget) {
+        // local to the transaction, so the pooled connection goes back with its default timeout
+        entityManager.createNativeQuery("SELECT set_config('statement_timeout', :timeout, true)")
+                .setParameter("timeout", String.valueOf(budget.toMillis()))
+                .getSingleResult();
+        List<Object[]> rows = entityManager
+                .createNativeQuery(TopicJdbcTemplateRepository.SUGGEST.formatted(column, ":query", ":pattern", ":limit"))
+                .setParameter("query", query)
+                .setParameter("pattern", "%" + escapeLike(query) + "%")
+                .setParameter("limit", limit)
+                .getResultList();
+        return rows.stream()
+                .map(row -> new TopicSuggestion((UUID) row[0], (String) row[1], (String) row[2],
+                        ((Number) row[3]).intValue(), toLocalDateTime(row[4]), ((Number) row[5]).doubleValue()))
+                .toList();
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        return value instanceof Timestamp ts ? ts.toLocalDateTime() : (LocalDateTime) value;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
     }
 
     @Override
@@ -57,11 +123,62 @@ public class TopicJpaRepository implements TopicRepository {
         return repository.findById(id);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Topic> findByIdWithPosts(UUID id, int postLimit) {
+        List<Object[]> rows = repository.findWithPosts(id, PageRequest.of(0, Math.max(postLimit, 1)));
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        Topic topic = (Topic) rows.get(0)[0];
+        List<Post> posts = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            if (row[1] != null && posts.size() < postLimit) {
+                posts.add((Post) row[1]);
+            }
+        }
+        // detach so replacing the mapped collection never reaches a flush
+        entityManager.detach(topic);
+        topic.setPosts(posts);
+        return Optional.of(topic);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<Fingerprint> fingerprint(UUID id, int postLimit) {
+        List<Object[]> rows = entityManager
+                .createNativeQuery(TopicJdbcTemplateRepository.FINGERPRINT.formatted(":limit", ":id"))
+                .setParameter("limit", Math.max(postLimit, 0))
+                .setParameter("id", id)
+                .getResultList();
+        return rows.stream()
+                .findFirst()
+                .map(row -> new Fingerprint(((Number) row[0]).longValue(), toLocalDateTime(row[3]),
+                        ((Number) row[1]).longValue(), ((Number) row[2]).longValue()));
+    }
+
+    @Override
+    public Fingerprint fingerprintAll() {
+        Object[] row = (Object[]) entityManager.createNativeQuery(TopicJdbcTemplateRepository.FINGERPRINT_ALL)
+                .getSingleResult();
+        return new Fingerprint(((Number) row[0]).longValue(), toLocalDateTime(row[1]), ((Number) row[2]).longValue());
+    }
+
     @Override
     public boolean existsById(UUID id) {
         return repository.existsById(id);
     }
 
+    @Override
+    public Set<UUID> findExistingIds(Collection<UUID> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(entityManager.createQuery("select t.id from Topic t where t.id in :ids", UUID.class)
+                .setParameter("ids", ids)
+                .getResultList());
+    }
+
     @Override
     @Transactional
     public Topic save(Topic topic) {
@@ -85,6 +202,107 @@ public class TopicJpaRepository implements TopicRepository {
         return repository.save(topic);
     }
 
+    @Override
+    @Transactional
+    public boolean incrementViewCount(UUID id) {
+        return repository.incrementViewCount(id) > 0;
+    }
+
+    @Override
+    @Transactional
+    public int addViewCounts(Map<UUID, Long> deltas) {
+        if (deltas == null || deltas.isEmpty()) {
+            return 0;
+        }
+        List<Map.Entry<UUID, Long>> entries = new ArrayList<>(deltas.entrySet());
+        int updated = 0;
+        for (int from = 0; from < entries.size(); from += VALUES_CHUNK) {
+            List<Map.Entry<UUID, Long>> chunk = entries.subList(from, Math.min(from + VALUES_CHUNK, entries.size()));
+            List<String> rows = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                rows.add("(CAST(?" + (2 * i + 1) + " AS uuid), CAST(?" + (2 * i + 2) + " AS bigint))");
+            }
+            Query query = entityManager.createNativeQuery("""
+                    UPDATE topics t
+                       SET view_count = t.view_count + v.delta
+                      FROM (VALUES %s) AS v(id, delta)
+                     WHERE t.id = v.id
+                    """.formatted(String.join(", ", rows)));
+            for (int i = 0; i < chunk.size(); i++) {
+                query.setParameter(2 * i + 1, chunk.get(i).getKey());
+                query.setParameter(2 * i + 2, chunk.get(i).getValue());
+            }
+            updated += query.executeUpdate();
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional
+    public boolean removeReply(UUID id) {
+        return repository.removeReply(id) > 0;
+    }
+
+    @Override
+    @Transactional
+    public int recomputeReplyStats(Collection<UUID> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        return entityManager.createNativeQuery("""
+                        UPDATE topics t
+                           SET reply_count = s.replies,
+                               last_post_at = s.last_post_at,
+                               updated_at = NOW()
+                          FROM (SELECT topic_id, COUNT(*) AS replies, MAX(created_at) AS last_post_at
+                                  FROM posts
+                                 WHERE topic_id IN (:ids)
+                                 GROUP BY topic_id) s
+                         WHERE t.id = s.topic_id
+                        """)
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public int adjustReplyStats(Map<UUID, ReplyDelta> deltas) {
+        if (deltas == null || deltas.isEmpty()) {
+            return 0;
+        }
+        List<Map.Entry<UUID, ReplyDelta>> entries = new ArrayList<>(deltas.entrySet());
+        int updated = 0;
+        for (int from = 0; from < entries.size(); from += VALUES_CHUNK) {
+            List<Map.Entry<UUID, ReplyDelta>> chunk = entries.subList(from, Math.min(from + VALUES_CHUNK, entries.size()));
+            List<String> rows = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                rows.add("(CAST(?" + (3 * i + 1) + " AS uuid), CAST(?" + (3 * i + 2) + " AS integer), CAST(?"
+                        + (3 * i + 3) + " AS timestamp))");
+            }
+            NativeQuery<?> query = entityManager.createNativeQuery(
+                    TopicJdbcTemplateRepository.ADJUST_REPLY_STATS.formatted(String.join(", ", rows))).unwrap(NativeQuery.class);
+            for (int i = 0; i < chunk.size(); i++) {
+                ReplyDelta delta = chunk.get(i).getValue();
+                query.setParameter(3 * i + 1, chunk.get(i).getKey());
+                query.setParameter(3 * i + 2, delta.replies());
+                // typed, so a null lastPostAt is still bound as a timestamp
+                query.setParameter(3 * i + 3, delta.lastPostAt(), StandardBasicTypes.LOCAL_DATE_TIME);
+            }
+            updated += query.executeUpdate();
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public List<UUID> restoreAllDeleted() {
+        List<UUID> ids = entityManager.createNativeQuery(
+                        "UPDATE topics SET deleted = FALSE, updated_at = NOW() WHERE deleted RETURNING id")
+                .getResultList();
+        return ids;
+    }
+
     @Override
     @Transactional
     public int deleteById(UUID id) {
@@ -2,27 +2,54 @@ package org.example.lab6.repository;
 
 import org.example.lab6.entity.Topic;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface TopicRepository {
     List<Topic> findAll();
+    // forward-only; the caller must close the stream
+    Stream<Topic> streamAll();
     List<Topic> findAllDeleted(Boolean deleted);
     List<Topic> findAllPinned(Boolean pinned);
     List<Topic> findAllClosed(Boolean closed);
     List<Topic> findAllByTitle(String title);
     List<Topic> findAllByAuthor(String author);
+    // similarity-ranked matches on one column, deleted topics excluded;
+    // budget caps the database time of the call, overrunning it fails the call
+    List<TopicSuggestion> suggestByTitle(String query, int limit, Duration budget);
+    List<TopicSuggestion> suggestByAuthor(String query, int limit, Duration budget);
 
     Optional<Topic> findById(UUID id);
+    Optional<Topic> findByIdWithPosts(UUID id, int postLimit);
+    // change markers matching Fingerprint.ofTopicWithPosts / Fingerprint.ofTopics, one aggregate query each
+    Optional<Fingerprint> fingerprint(UUID id, int postLimit);
+    Fingerprint fingerprintAll();
 
     boolean existsById(UUID id);
+    // the subset of ids that exist, in one query
+    Set<UUID> findExistingIds(Collection<UUID> ids);
 
     Topic save(Topic topic);
     List<Topic> saveAll(List<Topic> topics);
 
     Topic update(Topic topic);
 
+    boolean incrementViewCount(UUID id);
+    int addViewCounts(Map<UUID, Long> deltas);
+    // a post moved out or deleted: one reply less, and last_post_at back to the newest post still there
+    boolean removeReply(UUID id);
+    int recomputeReplyStats(Collection<UUID> ids);
+    // one statement per chunk of topics; reply counts are floored at zero, last_post_at only moves forward
+    int adjustReplyStats(Map<UUID, ReplyDelta> deltas);
+
+    List<UUID> restoreAllDeleted();
+
     int deleteById(UUID id);
     int delete(Topic topic);
     int deleteAllByIds(List<UUID> ids);
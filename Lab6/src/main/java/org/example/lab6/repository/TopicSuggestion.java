@@ -0,0 +1,9 @@
+package org.example.lab6.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// score is the word similarity of the query to the matched field, 1.0 for an exact word match
+public record TopicSuggestion(UUID id, String title, String author, Integer replyCount,
+                              LocalDateTime lastPostAt, double score) {
+}
@@ -0,0 +1,14 @@
+package org.example.lab6.service;
+
+// input the API cannot act on (a malformed cursor, import line or patch, an empty query);
+// GlobalExceptionHandler answers it with a 400 problem detail
+public class InvalidRequestException extends RuntimeException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
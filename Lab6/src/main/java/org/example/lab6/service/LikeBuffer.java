@@ -0,0 +1,243 @@
+package org.example.lab6.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.lab6.entity.Post;
+import org.example.lab6.repository.LikeDelta;
+import org.example.lab6.repository.PostRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.example.lab6.config.CacheConfig.POST;
+import static org.example.lab6.config.CacheConfig.POSTS_BY_TOPIC;
+import static org.example.lab6.config.CacheConfig.TOPIC_WITH_POSTS;
+
+// Likes and unlikes are coalesced per post in memory and written as one LikeDelta per post on flush,
+// so a popular post costs one UPDATE per interval instead of one per click. Reads through withPending
+// are eventually consistent: while a flush is in flight its clicks are in neither the buffer nor the row.
+@Slf4j
+@Component
+public class LikeBuffer {
+
+    private static final int STRIPES = 64;
+
+    private final PostRepository postRepository;
+    private final CacheManager cacheManager;
+    private final TaskScheduler taskScheduler;
+    private final int flushThreshold;
+
+    // a post always hashes to the same stripe; clicks on different stripes never contend, and a flush
+    // holds each stripe's lock only to swap its map. ReentrantLock rather than synchronized, which would
+    // pin the carrier thread under the virtual-threads profile.
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder pendingClicks = new LongAdder();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    public LikeBuffer(PostRepository postRepository,
+                      CacheManager cacheManager,
+                      TaskScheduler taskScheduler,
+                      MeterRegistry meterRegistry,
+                      @Value("${forum.likes.flush-threshold:1000}") int flushThreshold) {
+        this.postRepository = postRepository;
+        this.cacheManager = cacheManager;
+        this.taskScheduler = taskScheduler;
+        this.flushThreshold = flushThreshold;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        Gauge.builder("forum.likes.pending", pendingClicks, LongAdder::sum)
+                .description("Likes and unlikes counted in memory but not yet written to the database")
+                .register(meterRegistry);
+    }
+
+    // false for an unknown post, which is never buffered
+    public boolean like(UUID postId) {
+        return record(postId, LikeDelta.LIKE);
+    }
+
+    public boolean unlike(UUID postId) {
+        return record(postId, LikeDelta.UNLIKE);
+    }
+
+    private boolean record(UUID postId, LikeDelta click) {
+        Post post = find(postId);
+        if (post == null) {
+            return false;
+        }
+        Stripe stripe = stripe(postId);
+        stripe.lock.lock();
+        try {
+            stripe.pending.merge(postId, click, LikeDelta::then);
+            if (post.getTopicId() != null) {
+                stripe.topics.put(postId, post.getTopicId());
+            }
+            stripe.clicks++;
+        } finally {
+            stripe.lock.unlock();
+        }
+        pendingClicks.increment();
+        // the write runs on the scheduler, never on the request that crossed the threshold
+        if (pendingClicks.sum() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::flush, Instant.now());
+        }
+        return true;
+    }
+
+    // the same entry PostService.getPostById caches, so a click on a known post is usually a cache hit
+    private Post find(UUID postId) {
+        Cache posts = cacheManager.getCache(POST);
+        return posts != null
+                ? posts.get(postId, () -> postRepository.findById(postId).orElse(null))
+                : postRepository.findById(postId).orElse(null);
+    }
+
+    // the stored count with the clicks not flushed yet
+    public int likes(UUID postId, int stored) {
+        Stripe stripe = stripe(postId);
+        LikeDelta delta;
+        stripe.lock.lock();
+        try {
+            delta = stripe.pending.get(postId);
+        } finally {
+            stripe.lock.unlock();
+        }
+        return delta != null ? delta.applyTo(stored) : stored;
+    }
+
+    // a copy when clicks are pending: the argument may be a cached or shared instance
+    public Post withPending(Post post) {
+        int likes = likes(post.getId(), post.getLikes());
+        if (likes == post.getLikes()) {
+            return post;
+        }
+        Post copy = new Post();
+        copy.setId(post.getId());
+        copy.setAuthorId(post.getAuthorId());
+        copy.setTopicId(post.getTopicId());
+        copy.setTitle(post.getTitle());
+        copy.setContent(post.getContent());
+        copy.setLikes(likes);
+        copy.setCreatedAt(post.getCreatedAt());
+        copy.setUpdatedAt(post.getUpdatedAt());
+        copy.setVersion(post.getVersion());
+        return copy;
+    }
+
+    @Scheduled(fixedDelayString = "${forum.likes.flush-interval-ms:1000}")
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        flushRequested.set(false);
+        try {
+            Map<UUID, LikeDelta> deltas = new HashMap<>();
+            Map<UUID, UUID> topics = new HashMap<>();
+            int[] clicks = new int[STRIPES];
+            long drained = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                Stripe stripe = stripes[i];
+                stripe.lock.lock();
+                try {
+                    if (!stripe.pending.isEmpty()) {
+                        deltas.putAll(stripe.pending);
+                        topics.putAll(stripe.topics);
+                        clicks[i] = stripe.clicks;
+                        drained += stripe.clicks;
+                        stripe.pending = new HashMap<>();
+                        stripe.topics = new HashMap<>();
+                        stripe.clicks = 0;
+                    }
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            if (deltas.isEmpty()) {
+                return;
+            }
+            pendingClicks.add(-drained);
+            try {
+                postRepository.addLikes(deltas);
+            } catch (RuntimeException e) {
+                log.warn("Failed to flush {} buffered likes, keeping them for the next attempt", drained, e);
+                restore(deltas, topics, clicks);
+                pendingClicks.add(drained);
+                return;
+            }
+            // cached posts and their topics' post lists hold the count from before this flush,
+            // and their pending clicks are gone now
+            evict(POST, deltas.keySet());
+            Set<UUID> touchedTopics = new HashSet<>(topics.values());
+            evict(POSTS_BY_TOPIC, touchedTopics);
+            evict(TOPIC_WITH_POSTS, touchedTopics);
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    private void evict(String cacheName, Set<UUID> keys) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            keys.forEach(cache::evict);
+        }
+    }
+
+    // the failed run happened before anything clicked since, so it goes in front
+    private void restore(Map<UUID, LikeDelta> failed, Map<UUID, UUID> topics, int[] clicks) {
+        failed.forEach((postId, delta) -> {
+            Stripe stripe = stripe(postId);
+            stripe.lock.lock();
+            try {
+                stripe.pending.merge(postId, delta, (current, earlier) -> earlier.then(current));
+                UUID topicId = topics.get(postId);
+                if (topicId != null) {
+                    stripe.topics.putIfAbsent(postId, topicId);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        });
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = stripes[i];
+            stripe.lock.lock();
+            try {
+                stripe.clicks += clicks[i];
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private Stripe stripe(UUID postId) {
+        return stripes[(postId.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        Map<UUID, LikeDelta> pending = new HashMap<>();
+        // the topic of each pending post, whose lists are evicted after the flush
+        Map<UUID, UUID> topics = new HashMap<>();
+        int clicks;
+    }
+}
@@ -2,7 +2,11 @@ package org.example.lab6.service;
 
 import org.example.lab6.entity.Post;
 import org.example.lab6.repository.PostRepository;
+import org.example.lab6.repository.PostSearchHit;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -11,16 +15,23 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import static org.example.lab6.config.CacheConfig.POST;
+import static org.example.lab6.config.CacheConfig.POSTS_BY_TOPIC;
+import static org.example.lab6.config.CacheConfig.TOPIC_WITH_POSTS;
+
 @Service
 public class PostService {
 
     private final PostRepository postRepository;
+    private final LikeBuffer likeBuffer;
 
     @Autowired
-    public PostService(PostRepository postRepository) {
+    public PostService(PostRepository postRepository, LikeBuffer likeBuffer) {
         this.postRepository = postRepository;
+        this.likeBuffer = likeBuffer;
     }
 
+    @Cacheable(cacheNames = POSTS_BY_TOPIC, key = "#id")
     public List<Post> getPostsByTopicId(UUID id) {
         return postRepository.findByTopicId(id);
     }
@@ -29,11 +40,13 @@ public class PostService {
         return postRepository.findByAuthorId(id);
     }
 
+    @Cacheable(cacheNames = POST, key = "#id")
     public Optional<Post> getPostById(UUID id) {
         return postRepository.findById(id);
     }
 
     @Transactional
+    @CacheEvict(cacheNames = {POSTS_BY_TOPIC, TOPIC_WITH_POSTS}, key = "#post.topicId", condition = "#post.topicId != null")
     public Post createPost(Post post) {
         LocalDateTime now = LocalDateTime.now();
         if (post.getId() == null) {
@@ -52,7 +65,9 @@ public class PostService {
         return postRepository.save(post);
     }
 
+    // posts with a topic are deleted through TopicService.deletePostFromTopic, which evicts the lists
     @Transactional
+    @CacheEvict(cacheNames = POST, key = "#id")
     public boolean deletePost(UUID id) {
         return postRepository.deleteById(id);
     }
@@ -61,15 +76,36 @@ public class PostService {
         return postRepository.findByTitleContaining(keyword);
     }
 
+    public List<Post> searchPosts(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        return postRepository.search(query, 0, limit).stream()
+                .map(PostSearchHit::post)
+                .toList();
+    }
+
+    // likes are frequent: clicks are buffered and flushed in batches by LikeBuffer, which evicts the
+    // flushed posts and their topics' post lists; false for an unknown post
     public boolean likePost(UUID id) {
-        return postRepository.incrementLikes(id);
+        return likeBuffer.like(id);
     }
 
     public boolean unlikePost(UUID id) {
-        return postRepository.decrementLikes(id);
+        return likeBuffer.unlike(id);
+    }
+
+    // eventually consistent: the stored (possibly cached) count plus the clicks not flushed yet
+    public Post withPendingLikes(Post post) {
+        return likeBuffer.withPending(post);
     }
 
+    // the owning topic is not known here; edits are rare enough to drop the lists wholesale
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = POST, key = "#id"),
+            @CacheEvict(cacheNames = {POSTS_BY_TOPIC, TOPIC_WITH_POSTS}, allEntries = true)
+    })
     public boolean updatePost(UUID id, String newTitle, String newContent) {
         return postRepository.update(id, newTitle, newContent);
     }
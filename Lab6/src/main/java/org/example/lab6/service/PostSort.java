@@ -0,0 +1,29 @@
+package org.example.lab6.service;
+
+import org.example.lab6.repository.PostQuery;
+
+// the "property,direction" sort parameter shared by the blocking and reactive post listings;
+// an unknown property or direction is an InvalidRequestException, answered 400
+public record PostSort(PostQuery.SortKey key, boolean descending) {
+
+    public static final PostSort DEFAULT = new PostSort(PostQuery.SortKey.CREATED_AT, true);
+
+    public static PostSort parse(String sort) {
+        if (sort == null || sort.isBlank())
+            return DEFAULT;
+        String[] parts = sort.split(",", 2);
+        String direction = parts.length > 1 ? parts[1].trim().toLowerCase() : "asc";
+        if (!direction.equals("asc") && !direction.equals("desc"))
+            throw new InvalidRequestException("Unknown sort direction: " + parts[1].trim());
+        try {
+            return new PostSort(PostQuery.SortKey.fromProperty(parts[0].trim()), direction.equals("desc"));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return key.property() + "," + (descending ? "desc" : "asc");
+    }
+}
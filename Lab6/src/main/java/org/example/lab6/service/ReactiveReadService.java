@@ -0,0 +1,56 @@
+package org.example.lab6.service;
+
+import lombok.RequiredArgsConstructor;
+import org.example.lab6.entity.Post;
+import org.example.lab6.entity.Topic;
+import org.example.lab6.repository.PostQuery;
+import org.example.lab6.repository.ReactivePostRepository;
+import org.example.lab6.repository.ReactiveTopicRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveReadService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final ReactivePostRepository postRepository;
+    private final ReactiveTopicRepository topicRepository;
+
+    public Mono<Post> findPost(UUID id) {
+        return postRepository.findById(id);
+    }
+
+    public Flux<Post> findPosts(UUID authorId, UUID topicId, String titleContains, Integer minLikes,
+                                OffsetDateTime createdAtFrom, OffsetDateTime createdAtTo,
+                                int page, int size, String sort) {
+        int limit = Math.max(Math.min(size, MAX_PAGE_SIZE), 0);
+        // parsed before the Flux is returned, so a bad sort is answered 400 like the blocking listing
+        PostSort postSort = PostSort.parse(sort);
+        int offset = (int) Math.min((long) Math.max(page, 0) * limit, Integer.MAX_VALUE);
+        return postRepository.findAll(new PostQuery(authorId, topicId, titleContains, minLikes,
+                createdAtFrom != null ? createdAtFrom.toLocalDateTime() : null,
+                createdAtTo != null ? createdAtTo.toLocalDateTime() : null,
+                postSort.key(), postSort.descending(), offset, limit, null));
+    }
+
+    public Mono<Topic> findTopic(UUID id) {
+        return topicRepository.findById(id);
+    }
+
+    public Flux<Topic> findTopics(int page, int size) {
+        int limit = Math.max(Math.min(size, MAX_PAGE_SIZE), 0);
+        return topicRepository.findAll((int) Math.min((long) Math.max(page, 0) * limit, Integer.MAX_VALUE), limit);
+    }
+
+    public Flux<Post> findPostsOfTopic(UUID topicId) {
+        return postRepository.findByTopicId(topicId);
+    }
+}
@@ -1,15 +1,47 @@
 package org.example.lab6.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
 import org.example.lab6.entity.Post;
 import org.example.lab6.entity.Topic;
+import org.example.lab6.repository.Fingerprint;
+import org.example.lab6.repository.PostCursor;
+import org.example.lab6.repository.PostQuery;
+import org.example.lab6.repository.ReplyDelta;
 import org.example.lab6.repository.TopicRepository;
+import org.example.lab6.repository.TopicSuggestion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.example.lab6.config.CacheConfig.POST;
+import static org.example.lab6.config.CacheConfig.POSTS_BY_TOPIC;
+import static org.example.lab6.config.CacheConfig.TOPIC;
+import static org.example.lab6.config.CacheConfig.TOPICS;
+import static org.example.lab6.config.CacheConfig.TOPIC_WITH_POSTS;
 
 @Service
 @RequiredArgsConstructor
@@ -17,11 +49,36 @@ public class TopicService {
 
     private final TopicRepository topicRepository;
     private final PostService postService;
+    private final ViewCountBuffer viewCountBuffer;
+    private final ObjectMapper objectMapper;
+
+    @Value("${forum.topic.embedded-posts:50}")
+    private int embeddedPosts;
+
+    @Value("${forum.topic.typeahead.budget-ms:150}")
+    private long typeaheadBudgetMs;
 
+    @Value("${forum.topic.typeahead.max-results:20}")
+    private int typeaheadMaxResults;
+
+    @Cacheable(cacheNames = TOPICS, key = "'all'")
     public List<Topic> findAll() {
         return topicRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
+    public void exportNdjson(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(Topic.class);
+        try (Stream<Topic> topics = topicRepository.streamAll()) {
+            Iterator<Topic> it = topics.iterator();
+            while (it.hasNext()) {
+                out.write(writer.writeValueAsBytes(it.next()));
+                out.write('\n');
+            }
+        }
+        out.flush();
+    }
+
     @Transactional(readOnly = true)
     public List<Topic> findByTitle(String title) {
         if (title == null || title.isBlank()) {
@@ -38,18 +95,49 @@ public class TopicService {
         return topicRepository.findAllByAuthor(author);
     }
 
+    // deliberately not @Transactional: the repository call owns the transaction carrying the statement
+    // timeout, so a timed-out lookup rolls back there and degrades to no suggestions here
+    public List<TopicSuggestion> typeahead(String query, String field, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new InvalidRequestException("Typeahead query must not be empty");
+        }
+        String q = query.trim();
+        int n = Math.min(Math.max(limit, 1), typeaheadMaxResults);
+        Duration budget = Duration.ofMillis(typeaheadBudgetMs);
+        try {
+            return switch (field) {
+                case "title" -> topicRepository.suggestByTitle(q, n, budget);
+                case "author" -> topicRepository.suggestByAuthor(q, n, budget);
+                default -> throw new InvalidRequestException("Unknown typeahead field: " + field);
+            };
+        } catch (DataAccessException e) {
+            if (!isStatementTimeout(e)) throw e;
+            return List.of();
+        }
+    }
+
+    private static boolean isStatementTimeout(DataAccessException e) {
+        return e instanceof QueryTimeoutException
+                || e.getMostSpecificCause() instanceof SQLException sql && "57014".equals(sql.getSQLState());
+    }
+
     @Transactional(readOnly = true)
     public boolean existsById(UUID id) {
         return topicRepository.existsById(id);
     }
 
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = TOPIC, key = "#id")
     public Topic getById(UUID id) {
         return topicRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Topic not found: " + id));
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = TOPICS, allEntries = true),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS}, key = "#topic.id", condition = "#topic.id != null")
+    })
     public Topic save(Topic topic) {
         LocalDateTime now = LocalDateTime.now();
         if (topic.getAuthor() == null) {
@@ -78,26 +166,70 @@ public class TopicService {
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = TOPICS, allEntries = true),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS}, key = "#topic.id", condition = "#topic.id != null")
+    })
     public Topic update(Topic topic) {
         topic.setUpdatedAt(LocalDateTime.now());
         return topicRepository.update(topic);
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = TOPICS, allEntries = true),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS}, key = "#id")
+    })
+    public Topic edit(UUID id, Consumer<Topic> changes) {
+        return edit(id, null, changes);
+    }
+
+    // read-modify-write on a fresh copy: instances handed out by getById may be cached and shared.
+    // The write is conditional on the version that was read, so a concurrent edit fails instead of being lost.
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = TOPICS, allEntries = true),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS}, key = "#id")
+    })
+    public Topic edit(UUID id, Long expectedVersion, Consumer<Topic> changes) {
+        Topic topic = topicRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Topic not found: " + id));
+        if (expectedVersion != null && !expectedVersion.equals(topic.getVersion())) {
+            throw new OptimisticLockingFailureException("Topic " + id + " is no longer at version " + expectedVersion);
+        }
+        changes.accept(topic);
+        topic.setUpdatedAt(LocalDateTime.now());
+        return topicRepository.update(topic);
+    }
+
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = TOPICS, allEntries = true),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS, POSTS_BY_TOPIC}, key = "#id"),
+            // posts go with the topic (ON DELETE CASCADE); deleting topics is rare
+            @CacheEvict(cacheNames = POST, allEntries = true)
+    })
     public void deleteById(UUID id) {
         topicRepository.deleteById(id);
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = TOPICS, allEntries = true),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS}, key = "#topicId")
+    })
     public void touchReply(UUID topicId, LocalDateTime postTime) {
-        Topic topic = getById(topicId);
-        int replies = topic.getReplyCount() == null ? 0 : topic.getReplyCount();
-        topic.setReplyCount(replies + 1);
-        topic.setLastPostAt(postTime);
-        update(topic);
+        // count and last_post_at move in one UPDATE, the same statement the batch path uses
+        if (topicRepository.adjustReplyStats(Map.of(topicId, new ReplyDelta(1, postTime))) == 0) {
+            throw new IllegalArgumentException("Topic not found: " + topicId);
+        }
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = TOPICS, allEntries = true),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS}, key = "#id")
+    })
     public Topic softDelete(UUID id) {
         Topic topic = getById(id);
         topic.setDeleted(true);
@@ -105,6 +237,10 @@ public class TopicService {
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = TOPICS, allEntries = true),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS}, key = "#id")
+    })
     public Topic restore(UUID id) {
         Topic topic = getById(id);
         topic.setDeleted(false);
@@ -112,36 +248,76 @@ public class TopicService {
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = TOPICS, allEntries = true),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS}, key = "#id")
+    })
     public Topic togglePinned(UUID id) {
         Topic topic = getById(id);
         topic.setPinned(topic.getPinned() == null ? true : !topic.getPinned());
         return update(topic);
     }
 
-    @Transactional
     public void incrementViewCount(UUID topicId) {
-        Topic t = getById(topicId);
-        t.setViewCount(t.getViewCount() == null ? 1 : t.getViewCount() + 1);
-        update(t);
+        viewCountBuffer.increment(topicId);
+    }
+
+    @Transactional
+    @CacheEvict(cacheNames = {TOPICS, TOPIC, TOPIC_WITH_POSTS}, allEntries = true)
+    public List<UUID> restoreAllDeleted() {
+        return topicRepository.restoreAllDeleted();
+    }
+
+    @Transactional(readOnly = true)
+    public Set<UUID> existingIds(Collection<UUID> ids) {
+        return topicRepository.findExistingIds(ids);
+    }
+
+    // the one reply-stats write of a post batch, whatever number of posts each topic gained or lost
+    @Transactional
+    @CacheEvict(cacheNames = {TOPICS, TOPIC, TOPIC_WITH_POSTS, POSTS_BY_TOPIC}, allEntries = true)
+    public int applyReplyDeltas(Map<UUID, ReplyDelta> deltas) {
+        return topicRepository.adjustReplyStats(deltas);
     }
 
+    // runs after bulk imports, so the post lists are stale as well
     @Transactional
-    public List<Topic> restoreAllDeleted() {
-        List<Topic> deleted = topicRepository.findAllDeleted(true);
-        deleted.forEach(t -> t.setDeleted(false));
-        return topicRepository.saveAll(deleted);
+    @CacheEvict(cacheNames = {TOPICS, TOPIC, TOPIC_WITH_POSTS, POSTS_BY_TOPIC}, allEntries = true)
+    public int recomputeReplyStats(Collection<UUID> topicIds) {
+        return topicRepository.recomputeReplyStats(topicIds);
+    }
+
+
+    // never cached: it is what tells a client whether its copy is still current
+    public Optional<Fingerprint> fingerprint(UUID id) {
+        return topicRepository.fingerprint(id, Math.max(embeddedPosts, 1));
     }
 
+    public Fingerprint fingerprintAll() {
+        return topicRepository.fingerprintAll();
+    }
 
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = TOPIC_WITH_POSTS, key = "#id")
     public Topic getWithPosts(UUID id) {
-        Topic t = getById(id);
-        List<Post> posts = postService.getPostsByTopicId(id);
-        t.setPosts(posts);
+        int limit = Math.max(embeddedPosts, 1);
+        Topic t = topicRepository.findByIdWithPosts(id, limit + 1)
+                .orElseThrow(() -> new IllegalArgumentException("Topic not found: " + id));
+        List<Post> posts = t.getPosts();
+        if (posts.size() > limit) {
+            List<Post> embedded = new ArrayList<>(posts.subList(0, limit));
+            t.setPosts(embedded);
+            t.setPostsCursor(PostCursor.after(embedded.get(limit - 1), PostQuery.SortKey.CREATED_AT, true).encode());
+        }
         return t;
     }
 
+    // touchReply below is a self-call and bypasses the proxy, so this method evicts for it
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = TOPICS, allEntries = true),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS, POSTS_BY_TOPIC}, key = "#topicId")
+    })
     public Post addPostToTopic(UUID topicId, Post post) {
         post.setTopicId(topicId);
         Post created = postService.createPost(post);
@@ -150,12 +326,16 @@ public class TopicService {
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = TOPICS, allEntries = true),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS, POSTS_BY_TOPIC}, key = "#fromTopicId",
+                    condition = "#fromTopicId != null"),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS, POSTS_BY_TOPIC}, key = "#toTopicId",
+                    condition = "#toTopicId != null")
+    })
     public void movePost(UUID fromTopicId, UUID toTopicId, LocalDateTime postTime) {
-        if (fromTopicId != null && !fromTopicId.equals(toTopicId) && existsById(fromTopicId)) {
-            Topic from = getById(fromTopicId);
-            int replies = from.getReplyCount() == null ? 0 : from.getReplyCount();
-            from.setReplyCount(Math.max(0, replies - 1));
-            update(from);
+        if (fromTopicId != null && !fromTopicId.equals(toTopicId)) {
+            topicRepository.removeReply(fromTopicId);
         }
         if (toTopicId != null && !toTopicId.equals(fromTopicId)) {
             touchReply(toTopicId, postTime != null ? postTime : LocalDateTime.now());
@@ -163,19 +343,16 @@ public class TopicService {
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = TOPICS, allEntries = true),
+            @CacheEvict(cacheNames = {TOPIC, TOPIC_WITH_POSTS, POSTS_BY_TOPIC}, key = "#topicId"),
+            @CacheEvict(cacheNames = POST, key = "#postId")
+    })
     public boolean deletePostFromTopic(UUID topicId, UUID postId) {
         boolean ok = postService.deletePost(postId);
         if (ok) {
-            Topic t = getById(topicId);
-            int replies = t.getReplyCount() == null ? 0 : t.getReplyCount();
-            t.setReplyCount(Math.max(0, replies - 1));
-            t.setUpdatedAt(LocalDateTime.now());
-            update(t);
+            topicRepository.removeReply(topicId);
         }
         return ok;
     }
-
-
-
-
 }
@@ -0,0 +1,92 @@
+package org.example.lab6.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.lab6.repository.TopicRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Component
+public class ViewCountBuffer {
+
+    private final TopicRepository topicRepository;
+    private final TaskScheduler taskScheduler;
+    private final int flushThreshold;
+
+    // merge and remove are atomic per key, so a flush takes an entry out whole and the map only
+    // holds topics viewed since the last flush
+    private final Map<UUID, Long> pending = new ConcurrentHashMap<>();
+    private final LongAdder pendingTotal = new LongAdder();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    public ViewCountBuffer(TopicRepository topicRepository,
+                           TaskScheduler taskScheduler,
+                           MeterRegistry meterRegistry,
+                           @Value("${forum.view-count.flush-threshold:1000}") int flushThreshold) {
+        this.topicRepository = topicRepository;
+        this.taskScheduler = taskScheduler;
+        this.flushThreshold = flushThreshold;
+        Gauge.builder("forum.view_count.pending", pendingTotal, LongAdder::sum)
+                .description("Topic views counted in memory but not yet written to the database")
+                .register(meterRegistry);
+    }
+
+    public void increment(UUID topicId) {
+        pending.merge(topicId, 1L, Long::sum);
+        pendingTotal.increment();
+        // the write runs on the scheduler, never on the request that crossed the threshold
+        if (pendingTotal.sum() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::flush, Instant.now());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${forum.view-count.flush-interval-ms:1000}")
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        flushRequested.set(false);
+        try {
+            Map<UUID, Long> deltas = new HashMap<>();
+            for (UUID id : pending.keySet()) {
+                Long delta = pending.remove(id);
+                if (delta != null) {
+                    deltas.put(id, delta);
+                }
+            }
+            if (deltas.isEmpty()) {
+                return;
+            }
+            long drained = deltas.values().stream().mapToLong(Long::longValue).sum();
+            pendingTotal.add(-drained);
+            try {
+                topicRepository.addViewCounts(deltas);
+            } catch (RuntimeException e) {
+                log.warn("Failed to flush {} buffered topic views, keeping them for the next attempt", drained, e);
+                deltas.forEach((id, delta) -> pending.merge(id, delta, Long::sum));
+                pendingTotal.add(drained);
+            }
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
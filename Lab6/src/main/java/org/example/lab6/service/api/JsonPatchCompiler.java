@@ -0,0 +1,105 @@
+package org.example.lab6.service.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.example.lab6.repository.PostPatch;
+import org.example.lab6.repository.PostPatch.Field;
+import org.example.lab6.service.InvalidRequestException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+// Turns an RFC 6902 patch on a post into column writes and "test" preconditions, so applying it needs
+// neither the stored row nor a JSON copy of it. Operations the UPDATE cannot express are rejected up front.
+final class JsonPatchCompiler {
+
+    private static final Map<String, Field> PATHS = Map.of(
+            "/title", Field.TITLE,
+            "/content", Field.CONTENT,
+            "/topicId", Field.TOPIC_ID,
+            "/likes", Field.LIKES);
+
+    private JsonPatchCompiler() {
+    }
+
+    // operations: the patch as serialized by JsonPatch, an array of {op, path, value}
+    static PostPatch compile(JsonNode operations, int maxTitleLength) {
+        Map<Field, Object> values = new EnumMap<>(Field.class);
+        Map<Field, Object> expected = new EnumMap<>(Field.class);
+        for (JsonNode operation : operations) {
+            String op = operation.path("op").asText();
+            String path = operation.path("path").asText();
+            Field field = PATHS.get(path);
+            if (field == null)
+                throw new InvalidRequestException("Unsupported JSON Patch path: " + path + "; patchable are " + PATHS.keySet());
+            switch (op) {
+                case "add", "replace" -> values.put(field, written(field, value(field, operation.path("value")), maxTitleLength));
+                case "remove" -> values.put(field, removed(field));
+                case "test" -> {
+                    Object value = value(field, operation.path("value"));
+                    // a test after a write in the same patch is decided here, against the value being written
+                    if (values.containsKey(field)) {
+                        if (!Objects.equals(values.get(field), value)) throw failed(path);
+                    } else if (expected.containsKey(field)) {
+                        if (!Objects.equals(expected.get(field), value)) throw failed(path);
+                    } else {
+                        expected.put(field, value);
+                    }
+                }
+                default -> throw new InvalidRequestException("Unsupported JSON Patch operation: " + op);
+            }
+        }
+        return new PostPatch(values, expected);
+    }
+
+    private static Object value(Field field, JsonNode value) {
+        if (value.isMissingNode())
+            throw new InvalidRequestException("Missing value for " + field.column());
+        return switch (field) {
+            case TITLE, CONTENT -> text(field, value);
+            case TOPIC_ID -> {
+                if (value.isNull()) yield null;
+                if (!value.isTextual()) throw new InvalidRequestException("topicId must be a UUID");
+                try {
+                    yield UUID.fromString(value.asText());
+                } catch (IllegalArgumentException e) {
+                    throw new InvalidRequestException("topicId must be a UUID", e);
+                }
+            }
+            case LIKES -> {
+                if (!value.isIntegralNumber() || !value.canConvertToInt())
+                    throw new InvalidRequestException("likes must be an integer");
+                yield value.intValue();
+            }
+        };
+    }
+
+    // a title the column holds and a like count that can exist; nothing is adjusted silently
+    private static Object written(Field field, Object value, int maxTitleLength) {
+        if (field == Field.TITLE && ((String) value).length() > maxTitleLength)
+            throw new InvalidRequestException("title must be at most " + maxTitleLength + " characters");
+        if (field == Field.LIKES && (Integer) value < 0)
+            throw new InvalidRequestException("likes must not be negative");
+        return value;
+    }
+
+    private static String text(Field field, JsonNode value) {
+        if (!value.isTextual() || value.asText().isBlank())
+            throw new InvalidRequestException(field.column() + " must be a non-blank string");
+        return value.asText();
+    }
+
+    // the entity has no nullable text to remove; topicId detaches the post, likes resets
+    private static Object removed(Field field) {
+        return switch (field) {
+            case TITLE, CONTENT -> throw new InvalidRequestException(field.column() + " cannot be removed");
+            case TOPIC_ID -> null;
+            case LIKES -> 0;
+        };
+    }
+
+    private static PatchConflictException failed(String path) {
+        return new PatchConflictException("JSON Patch test failed at " + path);
+    }
+}
@@ -0,0 +1,9 @@
+package org.example.lab6.service.api;
+
+// a JSON Patch "test" operation did not hold against the stored post
+public class PatchConflictException extends RuntimeException {
+
+    public PatchConflictException(String message) {
+        super(message);
+    }
+}
@@ -1,30 +1,62 @@
 package org.example.lab6.service.api;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.github.fge.jsonpatch.JsonPatch;
 import org.example.lab6.dto.*;
 import org.example.lab6.entity.Post;
+import org.example.lab6.repository.Fingerprint;
+import org.example.lab6.repository.LikeDelta;
+import org.example.lab6.repository.PatchedPost;
+import org.example.lab6.repository.PostCursor;
+import org.example.lab6.repository.PostPatch;
+import org.example.lab6.repository.PostQuery;
 import org.example.lab6.repository.PostRepository;
+import org.example.lab6.repository.PostSearchHit;
+import org.example.lab6.repository.ReplyDelta;
+import org.example.lab6.service.InvalidRequestException;
+import org.example.lab6.service.LikeBuffer;
+import org.example.lab6.service.PostSort;
 import org.example.lab6.service.TopicService;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
+import static org.example.lab6.config.CacheConfig.POST;
+import static org.example.lab6.config.CacheConfig.POSTS_BY_TOPIC;
+import static org.example.lab6.config.CacheConfig.TOPIC_WITH_POSTS;
+
 @Service
 public class PostApiService {
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_TITLE_LENGTH = 200;
+
     private final PostRepository repository;
     private final ObjectMapper mapper;
     private final TopicService topicService;
+    private final LikeBuffer likeBuffer;
 
-    public PostApiService(PostRepository repository, ObjectMapper mapper, TopicService topicService) {
+    public PostApiService(PostRepository repository, ObjectMapper mapper, TopicService topicService, LikeBuffer likeBuffer) {
         this.repository = repository;
         this.mapper = mapper;
         this.topicService = topicService;
+        this.likeBuffer = likeBuffer;
     }
 
     // CREATE
@@ -44,77 +76,102 @@ public class PostApiService {
         return repository.save(post);
     }
 
-    public Optional<Post> findById(UUID id) {
-        return repository.findById(id);
-    }
-
-    // PUT (replace)
+    // BULK IMPORT (one JSON object per line)
     @Transactional
-    public Optional<Post> replace(UUID id, PostUpdateRequest req) {
-        Optional<Post> existing = repository.findById(id);
-        if (existing.isEmpty())
-            return Optional.empty();
-        Post p = existing.get();
-        UUID oldTopicId = p.getTopicId();
-        p.setTopicId(req.topicId());
-        p.setTitle(req.title());
-        p.setContent(req.content());
-        p.setUpdatedAt(LocalDateTime.now());
-        Post saved = repository.save(p);
-        if (!Objects.equals(oldTopicId, req.topicId())) {
-            topicService.movePost(oldTopicId, req.topicId(), saved.getUpdatedAt());
+    public PostImportResult importNdjson(InputStream body) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        AtomicLong lineNo = new AtomicLong();
+        Set<UUID> topicIds = new HashSet<>();
+        LocalDateTime now = LocalDateTime.now();
+        long imported;
+        // rows are parsed lazily while the repository drains the stream, so the body is never buffered whole
+        try (Stream<String> lines = reader.lines()) {
+            imported = repository.importPosts(lines
+                    .map(line -> {
+                        long n = lineNo.incrementAndGet();
+                        return line.isBlank() ? null : toImportedPost(line, n, now);
+                    })
+                    .filter(Objects::nonNull)
+                    .peek(post -> {
+                        if (post.getTopicId() != null)
+                            topicIds.add(post.getTopicId());
+                    }));
         }
-        return Optional.of(saved);
+        int topicsUpdated = topicService.recomputeReplyStats(topicIds);
+        return new PostImportResult(imported, topicsUpdated);
     }
 
-    @Transactional
-    public Optional<Post> patchJsonPatch(UUID id, JsonPatch patch) {
+    private Post toImportedPost(String line, long lineNo, LocalDateTime now) {
+        PostImportRecord rec;
         try {
-            Optional<Post> existing = repository.findById(id);
-            if (existing.isEmpty())
-                return Optional.empty();
-
-            Post current = existing.get();
-            UUID oldTopicId = current.getTopicId();
-            JsonNode node = mapper.valueToTree(current);
-            JsonNode patched = patch.apply(node);
-            Post result = mapper.treeToValue(patched, Post.class);
-
-            result.setId(current.getId());
-            result.setAuthorId(current.getAuthorId());
-            if (result.getCreatedAt() == null)
-                result.setCreatedAt(current.getCreatedAt());
-            if (result.getLikes() < 0)
-                result.setLikes(0);
-
-            result.setUpdatedAt(LocalDateTime.now());
-            repository.save(result);
-            if (!Objects.equals(oldTopicId, result.getTopicId())) {
-                topicService.movePost(oldTopicId, result.getTopicId(), result.getUpdatedAt());
+            rec = mapper.readValue(line, PostImportRecord.class);
+        } catch (JsonProcessingException e) {
+            throw new InvalidRequestException("Line " + lineNo + ": " + e.getOriginalMessage());
+        }
+        if (rec.authorId() == null)
+            throw new InvalidRequestException("Line " + lineNo + ": authorId is required");
+        if (rec.title() == null || rec.title().isBlank())
+            throw new InvalidRequestException("Line " + lineNo + ": title is required");
+        if (rec.title().length() > MAX_TITLE_LENGTH)
+            throw new InvalidRequestException("Line " + lineNo + ": title is longer than " + MAX_TITLE_LENGTH);
+        if (rec.content() == null || rec.content().isBlank())
+            throw new InvalidRequestException("Line " + lineNo + ": content is required");
+        if (rec.likes() != null && rec.likes() < 0)
+            throw new InvalidRequestException("Line " + lineNo + ": likes must not be negative");
+
+        Post post = new Post();
+        post.setAuthorId(rec.authorId());
+        post.setTopicId(rec.topicId());
+        post.setTitle(rec.title());
+        post.setContent(rec.content());
+        post.setLikes(rec.likes() != null ? rec.likes() : 0);
+        post.setCreatedAt(rec.createdAt() != null ? rec.createdAt() : now);
+        post.setUpdatedAt(post.getCreatedAt());
+        return post;
+    }
+
+    // EXPORT (one JSON object per line, rows are written as they are read)
+    @Transactional(readOnly = true)
+    public void exportNdjson(OutputStream out) throws IOException {
+        ObjectWriter writer = mapper.writerFor(Post.class);
+        try (Stream<Post> posts = repository.streamAll()) {
+            Iterator<Post> it = posts.iterator();
+            while (it.hasNext()) {
+                out.write(writer.writeValueAsBytes(it.next()));
+                out.write('\n');
             }
-            return Optional.of(result);
-        } catch (Exception e) {
-            return Optional.empty();
         }
+        out.flush();
     }
 
+    public Optional<Post> findById(UUID id) {
+        return repository.findById(id).map(likeBuffer::withPending);
+    }
+
+    // PUT (replace)
     @Transactional
-    public Optional<Post> patchMerge(UUID id, PostMergePatch patch) {
-        Optional<Post> existing = repository.findById(id);
-        if (existing.isEmpty())
-            return Optional.empty();
-
-        Post p = existing.get();
-        UUID oldTopicId = p.getTopicId();
-        if (patch.topicId() != null)
-            p.setTopicId(patch.topicId());
-        if (patch.title() != null)
-            p.setTitle(patch.title());
-        if (patch.content() != null)
-            p.setContent(patch.content());
-
-        p.setUpdatedAt(LocalDateTime.now());
-        Post saved = repository.save(p);
+    @Caching(evict = {
+            @CacheEvict(cacheNames = POST, key = "#id"),
+            @CacheEvict(cacheNames = {POSTS_BY_TOPIC, TOPIC_WITH_POSTS}, allEntries = true)
+    })
+    public Optional<Post> replace(UUID id, PostUpdateRequest req, Long expectedVersion) {
+        return patch(id, PostPatch.replace(req.topicId(), req.title(), req.content()), expectedVersion);
+    }
+
+    // one conditional UPDATE; the row is only read again to tell a stale version or a failed
+    // JSON Patch test from a missing post
+    private Optional<Post> patch(UUID id, PostPatch patch, Long expectedVersion) {
+        Optional<PatchedPost> patched = repository.patch(id, patch, expectedVersion);
+        if (patched.isEmpty()) {
+            if (expectedVersion == null && patch.expected().isEmpty()) return Optional.empty();
+            Optional<Post> current = repository.findById(id);
+            if (current.isEmpty()) return Optional.empty();
+            if (expectedVersion != null && !expectedVersion.equals(current.get().getVersion()))
+                throw new OptimisticLockingFailureException("Post " + id + " is no longer at version " + expectedVersion);
+            throw new PatchConflictException("JSON Patch test failed for post " + id);
+        }
+        Post saved = patched.get().post();
+        UUID oldTopicId = patched.get().previousTopicId();
         if (!Objects.equals(oldTopicId, saved.getTopicId())) {
             topicService.movePost(oldTopicId, saved.getTopicId(), saved.getUpdatedAt());
         }
@@ -122,6 +179,25 @@ public class PostApiService {
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = POST, key = "#id"),
+            @CacheEvict(cacheNames = {POSTS_BY_TOPIC, TOPIC_WITH_POSTS}, allEntries = true)
+    })
+    public Optional<Post> patchJsonPatch(UUID id, JsonPatch patch, Long expectedVersion) {
+        return patch(id, JsonPatchCompiler.compile(mapper.valueToTree(patch), MAX_TITLE_LENGTH), expectedVersion);
+    }
+
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = POST, key = "#id"),
+            @CacheEvict(cacheNames = {POSTS_BY_TOPIC, TOPIC_WITH_POSTS}, allEntries = true)
+    })
+    public Optional<Post> patchMerge(UUID id, PostMergePatch patch, Long expectedVersion) {
+        return patch(id, PostPatch.merge(patch.topicId(), patch.title(), patch.content()), expectedVersion);
+    }
+
+    @Transactional
+    @CacheEvict(cacheNames = POST, key = "#id")
     public boolean deleteById(UUID id) {
         Optional<Post> existing = repository.findById(id);
         if (existing.isEmpty()) return false;
@@ -134,6 +210,175 @@ public class PostApiService {
         return true;
     }
 
+    // BATCH: validation failures are reported per item and skipped, everything else is written in this
+    // transaction as one JDBC batch per kind of operation, followed by a single reply-stats update for
+    // all the topics the batch touched. A post takes at most one update or delete per batch.
+    @Transactional
+    @CacheEvict(cacheNames = {POST, POSTS_BY_TOPIC, TOPIC_WITH_POSTS}, allEntries = true)
+    public PostBatchResult batch(List<PostBatchOperation> operations) {
+        LocalDateTime now = LocalDateTime.now();
+        PostBatchItemResult[] results = new PostBatchItemResult[operations.size()];
+
+        // one read for every post the batch names and one for every topic it moves posts into
+        Set<UUID> postIds = new HashSet<>();
+        Set<UUID> topicIds = new HashSet<>();
+        for (PostBatchOperation op : operations) {
+            if (op.op() != PostBatchOperation.Op.CREATE && op.id() != null) postIds.add(op.id());
+            if (op.topicId() != null) topicIds.add(op.topicId());
+        }
+        Map<UUID, Post> existing = new HashMap<>();
+        for (Post post : repository.findAllById(postIds)) {
+            existing.put(post.getId(), post);
+        }
+        Set<UUID> topics = topicService.existingIds(topicIds);
+
+        List<Post> creates = new ArrayList<>();
+        List<Integer> createAt = new ArrayList<>();
+        List<Post> updates = new ArrayList<>();
+        List<Integer> updateAt = new ArrayList<>();
+        List<Post> deletes = new ArrayList<>();
+        List<Integer> deleteAt = new ArrayList<>();
+        Map<UUID, LikeDelta> likes = new LinkedHashMap<>();
+        Set<UUID> edited = new HashSet<>();
+
+        for (int i = 0; i < operations.size(); i++) {
+            PostBatchOperation op = operations.get(i);
+            PostBatchItemResult rejected = rejected(i, op, existing, topics, edited);
+            if (rejected != null) {
+                results[i] = rejected;
+                continue;
+            }
+            switch (op.op()) {
+                case CREATE -> {
+                    Post post = new Post();
+                    post.setId(UUID.randomUUID());
+                    post.setAuthorId(op.authorId());
+                    post.setTopicId(op.topicId());
+                    post.setTitle(op.title());
+                    post.setContent(op.content());
+                    post.setLikes(0);
+                    post.setCreatedAt(now);
+                    post.setUpdatedAt(now);
+                    creates.add(post);
+                    createAt.add(i);
+                }
+                case UPDATE -> {
+                    // a fresh instance: the one read above may be a managed or shared copy
+                    Post current = existing.get(op.id());
+                    Post post = new Post();
+                    post.setId(current.getId());
+                    post.setAuthorId(current.getAuthorId());
+                    post.setTopicId(op.topicId() != null ? op.topicId() : current.getTopicId());
+                    post.setTitle(op.title() != null ? op.title() : current.getTitle());
+                    post.setContent(op.content() != null ? op.content() : current.getContent());
+                    post.setLikes(current.getLikes());
+                    post.setCreatedAt(current.getCreatedAt());
+                    post.setUpdatedAt(now);
+                    post.setVersion(current.getVersion());
+                    updates.add(post);
+                    updateAt.add(i);
+                    edited.add(op.id());
+                }
+                case DELETE -> {
+                    // deleted only at the version read above, as updates are
+                    deletes.add(existing.get(op.id()));
+                    deleteAt.add(i);
+                    edited.add(op.id());
+                }
+                case LIKE, UNLIKE -> {
+                    likes.merge(op.id(), op.op() == PostBatchOperation.Op.LIKE ? LikeDelta.LIKE : LikeDelta.UNLIKE, LikeDelta::then);
+                    results[i] = new PostBatchItemResult(i, op.op(), 200, op.id(), null, null);
+                }
+            }
+        }
+
+        Map<UUID, ReplyDelta> replies = new HashMap<>();
+        // an insert either lands or fails the whole batch
+        repository.insertAll(creates);
+        for (int k = 0; k < creates.size(); k++) {
+            Post post = creates.get(k);
+            int i = createAt.get(k);
+            results[i] = new PostBatchItemResult(i, PostBatchOperation.Op.CREATE, 201, post.getId(), 0L, null);
+            addReply(replies, post.getTopicId(), 1, now);
+        }
+        boolean[] updated = repository.updateAll(updates);
+        for (int k = 0; k < updates.size(); k++) {
+            Post post = updates.get(k);
+            int i = updateAt.get(k);
+            if (!updated[k]) {
+                results[i] = new PostBatchItemResult(i, PostBatchOperation.Op.UPDATE, 412, post.getId(), null,
+                        "Post " + post.getId() + " was modified concurrently");
+                continue;
+            }
+            results[i] = new PostBatchItemResult(i, PostBatchOperation.Op.UPDATE, 200, post.getId(), post.getVersion() + 1, null);
+            UUID oldTopicId = existing.get(post.getId()).getTopicId();
+            if (!Objects.equals(oldTopicId, post.getTopicId())) {
+                addReply(replies, oldTopicId, -1, null);
+                addReply(replies, post.getTopicId(), 1, now);
+            }
+        }
+        repository.addLikes(likes);
+        boolean[] deleted = repository.deleteAll(deletes);
+        for (int k = 0; k < deletes.size(); k++) {
+            UUID id = deletes.get(k).getId();
+            int i = deleteAt.get(k);
+            if (!deleted[k]) {
+                results[i] = new PostBatchItemResult(i, PostBatchOperation.Op.DELETE, 412, id, null,
+                        "Post " + id + " was modified concurrently");
+                continue;
+            }
+            results[i] = new PostBatchItemResult(i, PostBatchOperation.Op.DELETE, 204, id, null, null);
+            addReply(replies, deletes.get(k).getTopicId(), -1, null);
+        }
+        // a post moved out of a topic and another moved in leave nothing to write
+        replies.values().removeIf(delta -> delta.replies() == 0 && delta.lastPostAt() == null);
+        int topicsUpdated = replies.isEmpty() ? 0 : topicService.applyReplyDeltas(replies);
+
+        List<PostBatchItemResult> items = List.of(results);
+        int succeeded = (int) items.stream().filter(r -> r.error() == null).count();
+        return new PostBatchResult(items, succeeded, items.size() - succeeded, topicsUpdated);
+    }
+
+    private static void addReply(Map<UUID, ReplyDelta> replies, UUID topicId, int delta, LocalDateTime postTime) {
+        if (topicId == null) return;
+        replies.merge(topicId, new ReplyDelta(delta, postTime), (a, b) -> a.plus(b.replies(), b.lastPostAt()));
+    }
+
+    // the per-item checks, against the rows read up front; null when the operation can go ahead
+    private static PostBatchItemResult rejected(int i, PostBatchOperation op, Map<UUID, Post> existing,
+                                                Set<UUID> topics, Set<UUID> edited) {
+        String invalid = switch (op.op()) {
+            case CREATE -> op.authorId() == null ? "authorId is required"
+                    : op.title() == null || op.title().isBlank() ? "title is required"
+                    : op.content() == null || op.content().isBlank() ? "content is required"
+                    : null;
+            case UPDATE -> op.id() == null ? "id is required"
+                    : op.title() != null && op.title().isBlank() ? "title must not be blank"
+                    : op.content() != null && op.content().isBlank() ? "content must not be blank"
+                    : null;
+            case DELETE, LIKE, UNLIKE -> op.id() == null ? "id is required" : null;
+        };
+        if (invalid == null && op.title() != null && op.title().length() > MAX_TITLE_LENGTH)
+            invalid = "title is longer than " + MAX_TITLE_LENGTH;
+        if (invalid != null)
+            return new PostBatchItemResult(i, op.op(), 400, op.id(), null, invalid);
+        if (op.op() != PostBatchOperation.Op.CREATE && !existing.containsKey(op.id()))
+            return new PostBatchItemResult(i, op.op(), 404, op.id(), null, "Post not found: " + op.id());
+        if ((op.op() == PostBatchOperation.Op.CREATE || op.op() == PostBatchOperation.Op.UPDATE)
+                && op.topicId() != null && !topics.contains(op.topicId()))
+            return new PostBatchItemResult(i, op.op(), 404, op.id(), null, "Topic not found: " + op.topicId());
+        if ((op.op() == PostBatchOperation.Op.UPDATE || op.op() == PostBatchOperation.Op.DELETE)) {
+            if (edited.contains(op.id()))
+                return new PostBatchItemResult(i, op.op(), 409, op.id(), null,
+                        "Post " + op.id() + " is already updated or deleted by an earlier operation of this batch");
+            Long version = existing.get(op.id()).getVersion();
+            if (op.version() != null && !op.version().equals(version))
+                return new PostBatchItemResult(i, op.op(), 412, op.id(), null,
+                        "Post " + op.id() + " is no longer at version " + op.version());
+        }
+        return null;
+    }
+
     public Page<Post> findAll(
             UUID authorId,
             UUID topicId,
@@ -141,109 +386,113 @@ public class PostApiService {
             Integer minLikes,
             OffsetDateTime createdAtFrom,
             OffsetDateTime createdAtTo,
-            int page, int size, String sort
+            int page, int size, String sort,
+            String cursor,
+            Fingerprint fingerprint // of the same filters if the caller already has it; its count replaces the COUNT
     ) {
-        List<Post> all = repository.findAll();
+        size = Math.min(size, MAX_PAGE_SIZE);
+        PostSort postSort = PostSort.parse(sort);
+        PostQuery.SortKey sortKey = postSort.key();
+        boolean descending = postSort.descending();
+        int limit = Math.max(size, 0);
+        LocalDateTime from = createdAtFrom != null ? createdAtFrom.toLocalDateTime() : null;
+        LocalDateTime to = createdAtTo != null ? createdAtTo.toLocalDateTime() : null;
+        String base = "/api/v1/posts";
 
-        Stream<Post> s = all.stream();
-        if (authorId != null)
-            s = s.filter(p -> authorId.equals(p.getAuthorId()));
-        if (topicId != null)
-            s = s.filter(p -> topicId.equals(p.getTopicId()));
-        if (titleContains != null && !titleContains.isBlank()) {
-            String q = titleContains.toLowerCase();
-            s = s.filter(p -> Optional.ofNullable(p.getTitle()).orElse("").toLowerCase().contains(q));
-        }
-        if (minLikes != null)
-            s = s.filter(p -> p.getLikes() >= minLikes);
-        if (createdAtFrom != null) {
-            var from = createdAtFrom.toLocalDateTime();
-            s = s.filter(p -> p.getCreatedAt() != null && !p.getCreatedAt().isBefore(from));
-        }
-        if (createdAtTo != null) {
-            var to = createdAtTo.toLocalDateTime();
-            s = s.filter(p -> p.getCreatedAt() != null && !p.getCreatedAt().isAfter(to));
+        if (cursor != null) {
+            PostCursor after = cursor.isBlank() ? null : decodeCursor(cursor);
+            if (after != null && !after.matches(sortKey, descending)) {
+                throw new InvalidRequestException("Cursor does not match sort " + postSort);
+            }
+            // one extra row tells whether a next page exists without a COUNT
+            PostQuery query = new PostQuery(authorId, topicId, titleContains, minLikes, from, to,
+                    sortKey, descending, 0, limit + 1, after);
+            List<Post> rows = limit == 0 ? List.of() : repository.findAll(query);
+            List<Post> content = rows.size() > limit ? rows.subList(0, limit) : rows;
+
+            Map<String, String> links = new LinkedHashMap<>();
+            links.put("self", base + buildQuery(authorId, topicId, titleContains, minLikes, createdAtFrom, createdAtTo,
+                    0, size, sort, cursor));
+            links.put("next", rows.size() > limit
+                    ? base + buildQuery(authorId, topicId, titleContains, minLikes, createdAtFrom, createdAtTo,
+                    0, size, sort, PostCursor.after(content.get(content.size() - 1), sortKey, descending).encode())
+                    : null);
+            links.put("prev", null);
+
+            return new Page<>(content, 0, size, -1, -1, postSort.toString(), links);
         }
 
-        Comparator<Post> cmp = buildComparator(sort); // createdAt, updatedAt, likes, title
-        List<Post> filtered = s.sorted(cmp).toList();
+        int offset = (int) Math.min((long) Math.max(page, 0) * limit, Integer.MAX_VALUE);
+        PostQuery query = new PostQuery(authorId, topicId, titleContains, minLikes, from, to,
+                sortKey, descending, offset, limit, null);
 
-        int total = filtered.size();
-        int from = Math.min(page * size, total);
-        int to = Math.min(from + size, total);
-        List<Post> content = filtered.subList(from, to);
+        long total = fingerprint != null ? fingerprint.count() : repository.count(query);
+        List<Post> content = (limit == 0 || offset >= total) ? List.of() : repository.findAll(query);
 
         int totalPages = size <= 0
                 ? 1
                 : (int) Math.ceil((double) total / size);
 
         Map<String, String> links = new LinkedHashMap<>();
-        String base = "/api/v1/posts";
-        String self = buildQuery(authorId, topicId, titleContains, minLikes, createdAtFrom, createdAtTo, page, size, sort);
+        String self = buildQuery(authorId, topicId, titleContains, minLikes, createdAtFrom, createdAtTo, page, size, sort, null);
         links.put("self", base + self);
         links.put("next", (page + 1 < totalPages)
-                ? base + buildQuery(authorId, topicId, titleContains, minLikes, createdAtFrom, createdAtTo, page + 1, size, sort)
+                ? base + buildQuery(authorId, topicId, titleContains, minLikes, createdAtFrom, createdAtTo, page + 1, size, sort, null)
                 : null);
         links.put("prev", (page - 1 >= 0 && totalPages > 0)
-                ? base + buildQuery(authorId, topicId, titleContains, minLikes, createdAtFrom, createdAtTo, page - 1, size, sort)
+                ? base + buildQuery(authorId, topicId, titleContains, minLikes, createdAtFrom, createdAtTo, page - 1, size, sort, null)
                 : null);
 
-        return new Page<>(content, page, size, total, totalPages, normalizeSort(sort), links);
+        return new Page<>(content, page, size, total, totalPages, postSort.toString(), links);
     }
 
-    private Comparator<Post> buildComparator(String sort) {
-        String field = "createdAt";
-        boolean desc = true;
-
-        if (sort != null && !sort.isBlank()) {
-            String[] parts = sort.split(",", 2);
-            field = parts[0].trim();
-            if (parts.length > 1) {
-                desc = "desc".equalsIgnoreCase(parts[1].trim());
-            } else {
-                desc = false;
-            }
-        }
+    // count and newest updated_at over the list filters, ignoring paging, sort and cursor
+    public Fingerprint fingerprint(UUID authorId, UUID topicId, String titleContains, Integer minLikes,
+                                   OffsetDateTime createdAtFrom, OffsetDateTime createdAtTo) {
+        return repository.fingerprint(new PostQuery(authorId, topicId, titleContains, minLikes,
+                createdAtFrom != null ? createdAtFrom.toLocalDateTime() : null,
+                createdAtTo != null ? createdAtTo.toLocalDateTime() : null,
+                PostQuery.SortKey.CREATED_AT, true, 0, 0, null));
+    }
 
-        Comparator<Post> c = switch (field) {
-            case "updatedAt" -> Comparator.comparing(
-                    Post::getUpdatedAt,
-                    Comparator.nullsFirst(Comparator.naturalOrder())
-            );
-            case "likes" -> Comparator.comparingInt(Post::getLikes);
-            case "title" -> Comparator.comparing(
-                    p -> Optional.ofNullable(p.getTitle()).orElse(""),
-                    String.CASE_INSENSITIVE_ORDER
-            );
-            default -> Comparator.comparing(
-                    Post::getCreatedAt,
-                    Comparator.nullsFirst(Comparator.naturalOrder())
-            );
-        };
+    // FULL-TEXT SEARCH (ranked, offset paging)
+    public Page<PostSearchHit> search(String q, int page, int size) {
+        if (q == null || q.isBlank())
+            throw new InvalidRequestException("Search query must not be empty");
+        size = Math.min(size, MAX_PAGE_SIZE);
+        int limit = Math.max(size, 0);
+        int offset = (int) Math.min((long) Math.max(page, 0) * limit, Integer.MAX_VALUE);
+
+        long total = repository.countSearch(q);
+        List<PostSearchHit> content = (limit == 0 || offset >= total) ? List.of() : repository.search(q, offset, limit);
+        int totalPages = size <= 0
+                ? 1
+                : (int) Math.ceil((double) total / size);
 
-        return desc ? c.reversed() : c;
+        String base = "/api/v1/posts/search?q=" + URLEncoder.encode(q, StandardCharsets.UTF_8) + "&size=" + size + "&page=";
+        Map<String, String> links = new LinkedHashMap<>();
+        links.put("self", base + page);
+        links.put("next", page + 1 < totalPages ? base + (page + 1) : null);
+        links.put("prev", page - 1 >= 0 && totalPages > 0 ? base + (page - 1) : null);
+
+        return new Page<>(content, page, size, total, totalPages, "rank,desc", links);
     }
 
-    private String normalizeSort(String sort) {
-        if (sort == null || sort.isBlank())
-            return "createdAt,desc";
-        String[] parts = sort.split(",", 2);
-        String field = parts[0].trim();
-        String dir = (parts.length > 1 ? parts[1].trim().toLowerCase() : "asc");
-
-        if (!List.of("createdAt", "updatedAt", "likes", "title").contains(field))
-            field = "createdAt";
-        if (!dir.equals("asc") && !dir.equals("desc"))
-            dir = "asc";
-        return field + "," + dir;
+    private static PostCursor decodeCursor(String cursor) {
+        try {
+            return PostCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException(e.getMessage(), e);
+        }
     }
 
     private String buildQuery(UUID authorId, UUID topicId, String titleContains, Integer minLikes,
                               OffsetDateTime createdAtFrom, OffsetDateTime createdAtTo,
-                              int page, int size, String sort) {
-        StringBuilder sb = new StringBuilder("?page=")
-                .append(page)
-                .append("&size=")
+                              int page, int size, String sort, String cursor) {
+        StringBuilder sb = cursor != null
+                ? new StringBuilder("?cursor=").append(cursor)
+                : new StringBuilder("?page=").append(page);
+        sb.append("&size=")
                 .append(size);
         if (sort != null && !sort.isBlank())
             sb.append("&sort=")
@@ -0,0 +1,86 @@
+package org.example.lab6.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.example.lab6.repository.Fingerprint;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Strong validators from a Fingerprint plus whatever else shapes the body (id, filters, paging).
+// A single entity's tag starts with its row version ("<version>-<hash>"), so If-Match maps onto
+// the version column without another read.
+public final class ETags {
+
+    private static final Pattern VERSIONED = Pattern.compile("\"(\\d+)-[0-9a-f]+\"");
+
+    private ETags() {
+    }
+
+    public static String of(Fingerprint fingerprint, Object... scope) {
+        String raw = fingerprint.count() + "|" + fingerprint.lastModified() + "|" + fingerprint.checksum()
+                + "|" + Arrays.toString(scope);
+        String hash = DigestUtils.md5DigestAsHex(raw.getBytes(StandardCharsets.UTF_8));
+        return "\"" + (fingerprint.version() != null ? fingerprint.version() + "-" : "") + hash + "\"";
+    }
+
+    // the version an edit must find, or null without a precondition (no header or "*").
+    // Only the version part is compared: likes, views and new replies do not conflict with an edit.
+    // A tag that names no version of this resource can never match and fails the request.
+    public static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) return null;
+        Long version = null;
+        for (String tag : ifMatch.split(",")) {
+            Matcher m = VERSIONED.matcher(tag.trim());
+            // weak tags never match under If-Match, and one statement can only check one version
+            if (!m.matches() || (version != null && version != Long.parseLong(m.group(1)))) {
+                throw new OptimisticLockingFailureException("If-Match " + ifMatch + " does not match the current version");
+            }
+            version = Long.parseLong(m.group(1));
+        }
+        return version;
+    }
+
+    public static long lastModified(Fingerprint fingerprint) {
+        return fingerprint.lastModified() == null ? -1
+                : fingerprint.lastModified().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public static boolean isConditional(HttpServletRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    // evaluated without a response so no validator headers are written yet: when this says "modified",
+    // the handler still answers with the validators of the body it actually sends
+    public static boolean notModified(HttpServletRequest request, String etag, Fingerprint fingerprint) {
+        return new ServletWebRequest(request).checkNotModified(etag, lastModified(fingerprint));
+    }
+
+    public static <T> ResponseEntity<T> notModifiedResponse(String etag, Fingerprint fingerprint) {
+        return validators(ResponseEntity.status(HttpStatus.NOT_MODIFIED), etag, fingerprint).build();
+    }
+
+    // HttpEntityMethodProcessor compares these with the request and answers 304 before writing the body
+    public static <T> ResponseEntity<T> ok(T body, String etag, Fingerprint fingerprint) {
+        return validators(ResponseEntity.ok(), etag, fingerprint).body(body);
+    }
+
+    private static ResponseEntity.BodyBuilder validators(ResponseEntity.BodyBuilder builder, String etag,
+                                                         Fingerprint fingerprint) {
+        builder.eTag(etag);
+        // an empty list has nothing to date; HttpHeaders would render -1 as 1969
+        if (fingerprint.lastModified() != null) {
+            builder.lastModified(lastModified(fingerprint));
+        }
+        return builder;
+    }
+}
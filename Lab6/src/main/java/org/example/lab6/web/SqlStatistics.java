@@ -0,0 +1,77 @@
+package org.example.lab6.web;
+
+// Per-request SQL counters, bound to the request thread by SqlStatisticsFilter
+public final class SqlStatistics {
+
+    private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long elapsedMillis;
+    private long rows;
+    private int budget = -1;
+    private String budgetOwner;
+    private boolean failOnBudget;
+
+    private SqlStatistics() {
+    }
+
+    static SqlStatistics start() {
+        SqlStatistics stats = new SqlStatistics();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static void finish() {
+        CURRENT.remove();
+    }
+
+    // null outside an HTTP request (scheduled flushes, async exports, startup)
+    public static SqlStatistics current() {
+        return CURRENT.get();
+    }
+
+    void declareBudget(int budget, String owner, boolean fail) {
+        this.budget = budget;
+        this.budgetOwner = owner;
+        this.failOnBudget = fail;
+    }
+
+    public void beforeStatement() {
+        if (failOnBudget && budget >= 0 && statements >= budget) {
+            throw new StatementBudgetExceededException(budgetOwner, budget);
+        }
+    }
+
+    public void afterStatement(long elapsedMillis) {
+        statements++;
+        this.elapsedMillis += elapsedMillis;
+    }
+
+    public void rowFetched() {
+        rows++;
+    }
+
+    public int statements() {
+        return statements;
+    }
+
+    public long elapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public boolean overBudget() {
+        return budget >= 0 && statements > budget;
+    }
+
+    public int budget() {
+        return budget;
+    }
+
+    public String budgetOwner() {
+        return budgetOwner;
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.lab6.web;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+@Slf4j
+@Component
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+
+    private final DistributionSummary statementsPerRequest;
+    private final DistributionSummary rowsPerRequest;
+    private final Timer databaseTimePerRequest;
+
+    public SqlStatisticsFilter(MeterRegistry registry) {
+        this.statementsPerRequest = DistributionSummary.builder("forum.request.sql.statements")
+                .description("SQL statements issued while serving one HTTP request")
+                .register(registry);
+        this.rowsPerRequest = DistributionSummary.builder("forum.request.sql.rows")
+                .description("Result set rows fetched while serving one HTTP request")
+                .register(registry);
+        this.databaseTimePerRequest = Timer.builder("forum.request.sql.time")
+                .description("Time spent executing SQL statements while serving one HTTP request")
+                .register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatistics stats = SqlStatistics.start();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SqlStatistics.finish();
+            statementsPerRequest.record(stats.statements());
+            rowsPerRequest.record(stats.rows());
+            databaseTimePerRequest.record(Duration.ofMillis(stats.elapsedMillis()));
+            if (stats.overBudget()) {
+                log.warn("{} {} issued {} SQL statements, budget of {} is {}",
+                        request.getMethod(), request.getRequestURI(), stats.statements(),
+                        stats.budgetOwner(), stats.budget());
+            } else if (log.isDebugEnabled() && stats.statements() > 0) {
+                log.debug("{} {}: {} SQL statements, {} ms in the database, {} rows fetched",
+                        request.getMethod(), request.getRequestURI(), stats.statements(),
+                        stats.elapsedMillis(), stats.rows());
+            }
+        }
+    }
+}
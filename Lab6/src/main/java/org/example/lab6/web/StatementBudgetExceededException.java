@@ -0,0 +1,9 @@
+package org.example.lab6.web;
+
+// deliberately not an IllegalStateException: JPA exception translation would rewrap that one
+public class StatementBudgetExceededException extends RuntimeException {
+
+    public StatementBudgetExceededException(String handler, int budget) {
+        super(handler + " exceeded its budget of " + budget + " SQL statements");
+    }
+}
@@ -0,0 +1,27 @@
+package org.example.lab6.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+public class StatementBudgetInterceptor implements HandlerInterceptor {
+
+    private final boolean failOnExceed;
+
+    public StatementBudgetInterceptor(boolean failOnExceed) {
+        this.failOnExceed = failOnExceed;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SqlStatistics stats = SqlStatistics.current();
+        if (stats != null && handler instanceof HandlerMethod method) {
+            StatementBudget budget = method.getMethodAnnotation(StatementBudget.class);
+            if (budget != null) {
+                stats.declareBudget(budget.value(), method.getShortLogMessage(), failOnExceed);
+            }
+        }
+        return true;
+    }
+}
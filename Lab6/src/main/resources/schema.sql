@@ -23,10 +23,15 @@ CREATE TABLE IF NOT EXISTS topics (
     deleted BOOLEAN NOT NULL DEFAULT FALSE,
     last_post_at TIMESTAMP,
     created_at TIMESTAMP NOT NULL DEFAULT NOW(),
-    updated_at TIMESTAMP NOT NULL DEFAULT NOW()
+    updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    -- bumped by edits only; counter updates (views, replies) leave it alone so they never conflict with an edit
+    version BIGINT NOT NULL DEFAULT 0
 );
 
-CREATE INDEX IF NOT EXISTS idx_topics_author ON topics (author);
+-- trigram GIN indexes serve the ILIKE '%x%' filters and the similarity-ranked typeahead;
+-- no query compares author for equality, so they replace the former btree on author
+CREATE INDEX IF NOT EXISTS idx_topics_title_trgm ON topics USING gin (title gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_topics_author_trgm ON topics USING gin (author gin_trgm_ops);
 CREATE INDEX IF NOT EXISTS idx_topics_deleted ON topics (deleted);
 CREATE INDEX IF NOT EXISTS idx_topics_pinned ON topics (pinned);
 
@@ -38,9 +43,21 @@ CREATE TABLE IF NOT EXISTS posts (
     content TEXT NOT NULL,
     likes INTEGER NOT NULL DEFAULT 0,
     created_at TIMESTAMP NOT NULL DEFAULT NOW(),
-    updated_at TIMESTAMP NOT NULL DEFAULT NOW()
+    updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    -- bumped by edits only, likes leave it alone
+    version BIGINT NOT NULL DEFAULT 0,
+    -- 'simple' skips stemming and stop words, so it works for any language the forum is written in
+    search_vector TSVECTOR GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', title), 'A') || setweight(to_tsvector('simple', content), 'B')
+    ) STORED
 );
 
-CREATE INDEX IF NOT EXISTS idx_posts_topic ON posts (topic_id);
+CREATE INDEX IF NOT EXISTS idx_posts_topic ON posts (topic_id, created_at DESC, id DESC);
 CREATE INDEX IF NOT EXISTS idx_posts_author ON posts (author_id);
 CREATE INDEX IF NOT EXISTS idx_posts_title_trgm ON posts USING gin (title gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_posts_search ON posts USING gin (search_vector);
+-- (sort key, id) composites back keyset pagination of /api/v1/posts in both directions
+CREATE INDEX IF NOT EXISTS idx_posts_created_at_id ON posts (created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_posts_updated_at_id ON posts (updated_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_posts_likes_id ON posts (likes DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_posts_title_lower_id ON posts (LOWER(title), id);
@@ -0,0 +1,26 @@
+package org.example.lab6.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class CacheMetricsTest {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    // Boot binds the caches behind the transaction-aware proxy; one miss meter per cache means one binding
+    @Test
+    void eachCacheIsBoundOnce() {
+        for (String cache : new String[]{CacheConfig.TOPIC, CacheConfig.POST, CacheConfig.TOPICS,
+                CacheConfig.TOPIC_WITH_POSTS, CacheConfig.POSTS_BY_TOPIC}) {
+            assertThat(registry.find("cache.gets").tag("cache", cache).tag("result", "miss").meters())
+                    .as(cache)
+                    .hasSize(1);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.lab6.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LikeDeltaTest {
+
+    // every run of up to three clicks, composed left to right
+    private static List<LikeDelta> runs() {
+        List<LikeDelta> runs = new ArrayList<>(List.of(LikeDelta.LIKE, LikeDelta.UNLIKE));
+        for (int length = 2; length <= 3; length++) {
+            List<LikeDelta> longer = new ArrayList<>();
+            for (LikeDelta run : runs) {
+                longer.add(run.then(LikeDelta.LIKE));
+                longer.add(run.then(LikeDelta.UNLIKE));
+            }
+            runs.addAll(longer);
+        }
+        return runs;
+    }
+
+    @Test
+    void thenIsAssociative() {
+        for (LikeDelta a : runs()) {
+            for (LikeDelta b : runs()) {
+                for (LikeDelta c : runs()) {
+                    assertThat(a.then(b).then(c)).isEqualTo(a.then(b.then(c)));
+                }
+            }
+        }
+    }
+
+    @Test
+    void composedRunMatchesApplyingEachClick() {
+        for (LikeDelta a : runs()) {
+            for (LikeDelta b : runs()) {
+                for (int likes = 0; likes <= 4; likes++) {
+                    assertThat(a.then(b).applyTo(likes)).isEqualTo(b.applyTo(a.applyTo(likes)));
+                }
+            }
+        }
+    }
+
+    @Test
+    void unlikeNeverGoesBelowZero() {
+        assertThat(LikeDelta.UNLIKE.applyTo(0)).isZero();
+        assertThat(LikeDelta.UNLIKE.then(LikeDelta.UNLIKE).applyTo(1)).isZero();
+    }
+
+    @Test
+    void unlikeThenLikeOnZeroEndsAtOne() {
+        // a net delta of 0 would leave the post at 0
+        assertThat(LikeDelta.UNLIKE.then(LikeDelta.LIKE).applyTo(0)).isEqualTo(1);
+    }
+
+    @Test
+    void unlikeAfterLikeCancelsOut() {
+        LikeDelta run = LikeDelta.LIKE.then(LikeDelta.UNLIKE);
+
+        assertThat(run.applyTo(0)).isZero();
+        assertThat(run.applyTo(5)).isEqualTo(5);
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.lab6.repository;
+
+import org.example.lab6.entity.Post;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PostCursorTest {
+
+    private static Post post() {
+        Post post = new Post();
+        post.setId(UUID.randomUUID());
+        post.setTitle("Pipes | and more");
+        post.setLikes(42);
+        post.setCreatedAt(LocalDateTime.of(2026, 1, 2, 3, 4, 5, 123_456_000));
+        post.setUpdatedAt(LocalDateTime.of(2026, 2, 3, 4, 5, 6));
+        return post;
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void roundTripsEverySortKey() {
+        Post post = post();
+        for (PostQuery.SortKey sortKey : PostQuery.SortKey.values()) {
+            for (boolean descending : new boolean[]{true, false}) {
+                PostCursor cursor = PostCursor.after(post, sortKey, descending);
+
+                assertThat(PostCursor.decode(cursor.encode())).isEqualTo(cursor);
+            }
+        }
+    }
+
+    @Test
+    void matchesOnlyItsOwnSort() {
+        PostCursor cursor = PostCursor.after(post(), PostQuery.SortKey.LIKES, true);
+
+        assertThat(cursor.matches(PostQuery.SortKey.LIKES, true)).isTrue();
+        assertThat(cursor.matches(PostQuery.SortKey.LIKES, false)).isFalse();
+        assertThat(cursor.matches(PostQuery.SortKey.TITLE, true)).isFalse();
+    }
+
+    @Test
+    void rejectsTamperedCursors() {
+        String id = UUID.randomUUID().toString();
+        for (String tampered : new String[]{
+                "not base64!",
+                token("LIKES|d|" + id),                      // missing value
+                token("PASSWORD|d|" + id + "|1"),            // unknown sort key
+                token("LIKES|d|not-a-uuid|1"),
+                token("LIKES|d|" + id + "|1 OR 1=1"),        // value of the wrong type
+                token("CREATED_AT|a|" + id + "|yesterday")}) {
+            assertThatThrownBy(() -> PostCursor.decode(tampered))
+                    .as(tampered)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageStartingWith("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.lab6.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostPatchSqlTest {
+
+    @Test
+    void assignmentsBumpTheVersion() {
+        String sql = PostJdbcClientRepository.patchSql(UUID.randomUUID(),
+                new PostPatch(Map.of(PostPatch.Field.TITLE, "t"), Map.of()), 3L, new HashMap<>());
+
+        assertThat(sql).contains("UPDATE posts").contains("version = p.version + 1");
+    }
+
+    @Test
+    void testOnlyPatchLocksAndChecksWithoutWriting() {
+        Map<String, Object> params = new HashMap<>();
+        String sql = PostJdbcClientRepository.patchSql(UUID.randomUUID(),
+                new PostPatch(Map.of(), Map.of(PostPatch.Field.LIKES, 5)), 3L, params);
+
+        assertThat(sql).startsWith("SELECT").endsWith("FOR UPDATE")
+                .contains("p.version = :version", "p.likes = :expect_likes")
+                .doesNotContain("UPDATE posts", "version + 1", "NOW()");
+        assertThat(params).containsEntry("version", 3L).containsEntry("expect_likes", 5);
+    }
+}
@@ -0,0 +1,27 @@
+package org.example.lab6.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostSearchHitTest {
+
+    @Test
+    void escapesPostTextAndMarksMatches() {
+        String marked = "<script>alert(1)</script> " + PostSearchHit.MATCH_START + "postgres" + PostSearchHit.MATCH_END;
+
+        assertThat(PostSearchHit.toHtml(marked))
+                .isEqualTo("&lt;script&gt;alert(1)&lt;/script&gt; <mark>postgres</mark>");
+    }
+
+    @Test
+    void userTypedMarkTagsStayText() {
+        assertThat(PostSearchHit.toHtml("<mark>not a match</mark>"))
+                .isEqualTo("&lt;mark&gt;not a match&lt;/mark&gt;");
+    }
+
+    @Test
+    void missingHighlightStaysNull() {
+        assertThat(PostSearchHit.toHtml(null)).isNull();
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.lab6.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.lab6.entity.Post;
+import org.example.lab6.repository.FakePostRepository;
+import org.example.lab6.repository.LikeDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LikeBufferTest {
+
+    // fails the next addLikes when asked to, like a database that is briefly unreachable
+    private static final class FlakyPostRepository extends FakePostRepository {
+        boolean failNext;
+
+        @Override
+        public int addLikes(Map<UUID, LikeDelta> deltas) {
+            if (failNext) {
+                failNext = false;
+                throw new QueryTimeoutException("database unavailable");
+            }
+            return super.addLikes(deltas);
+        }
+    }
+
+    private FlakyPostRepository repository;
+    private SimpleMeterRegistry registry;
+    private LikeBuffer buffer;
+    private UUID postId;
+
+    @BeforeEach
+    void setUp() {
+        repository = new FlakyPostRepository();
+        registry = new SimpleMeterRegistry();
+        // a threshold that is never reached: every flush in these tests is explicit
+        buffer = new LikeBuffer(repository, new ConcurrentMapCacheManager(), new SimpleAsyncTaskScheduler(),
+                registry, Integer.MAX_VALUE);
+        Post post = new Post();
+        post.setAuthorId(UUID.randomUUID());
+        post.setTopicId(UUID.randomUUID());
+        post.setTitle("title");
+        post.setContent("content");
+        postId = repository.save(post).getId();
+    }
+
+    private int stored() {
+        return repository.findById(postId).orElseThrow().getLikes();
+    }
+
+    private double pending() {
+        return registry.get("forum.likes.pending").gauge().value();
+    }
+
+    @Test
+    void flushWritesTheCoalescedClicks() {
+        buffer.like(postId);
+        buffer.like(postId);
+        buffer.like(postId);
+        buffer.unlike(postId);
+        assertThat(stored()).isZero();
+        assertThat(buffer.likes(postId, 0)).isEqualTo(2);
+
+        buffer.flush();
+
+        assertThat(stored()).isEqualTo(2);
+        assertThat(buffer.likes(postId, 2)).isEqualTo(2);
+        assertThat(pending()).isZero();
+    }
+
+    @Test
+    void failedFlushKeepsTheClicksForTheNextAttempt() {
+        buffer.like(postId);
+        buffer.like(postId);
+        repository.failNext = true;
+
+        buffer.flush();
+
+        assertThat(stored()).isZero();
+        assertThat(buffer.likes(postId, 0)).isEqualTo(2);
+        assertThat(pending()).isEqualTo(2);
+
+        buffer.flush();
+
+        assertThat(stored()).isEqualTo(2);
+        assertThat(pending()).isZero();
+    }
+
+    @Test
+    void requeuedClicksGoBeforeLaterOnes() {
+        // unlike then like on a post at 0 is 1; the other order would be 0
+        buffer.unlike(postId);
+        repository.failNext = true;
+        buffer.flush();
+        buffer.like(postId);
+
+        buffer.flush();
+
+        assertThat(stored()).isEqualTo(1);
+    }
+
+    @Test
+    void unknownPostIsNotBuffered() {
+        assertThat(buffer.like(UUID.randomUUID())).isFalse();
+        assertThat(pending()).isZero();
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.lab6.service;
+
+import org.example.lab6.repository.PostQuery;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PostSortTest {
+
+    @Test
+    void missingSortIsNewestFirst() {
+        assertThat(PostSort.parse(null)).isEqualTo(PostSort.DEFAULT);
+        assertThat(PostSort.parse(" ").toString()).isEqualTo("createdAt,desc");
+    }
+
+    @Test
+    void parsesPropertyAndDirection() {
+        assertThat(PostSort.parse("likes, DESC")).isEqualTo(new PostSort(PostQuery.SortKey.LIKES, true));
+        assertThat(PostSort.parse("title")).isEqualTo(new PostSort(PostQuery.SortKey.TITLE, false));
+    }
+
+    @Test
+    void unknownPropertyIsInvalid() {
+        assertThatThrownBy(() -> PostSort.parse("password,asc"))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("password");
+    }
+
+    @Test
+    void unknownDirectionIsInvalid() {
+        assertThatThrownBy(() -> PostSort.parse("likes,sideways"))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("sideways");
+    }
+}
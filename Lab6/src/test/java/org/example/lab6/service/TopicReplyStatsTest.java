@@ -0,0 +1,102 @@
+package org.example.lab6.service;
+
+import jakarta.persistence.EntityManager;
+import org.example.lab6.entity.Post;
+import org.example.lab6.entity.Topic;
+import org.example.lab6.repository.TopicJdbcTemplateRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// rolled back after each test; reads go through JdbcTemplate, past the persistence context
+@SpringBootTest
+@Transactional
+class TopicReplyStatsTest {
+
+    private static final LocalDateTime OLDER = LocalDateTime.of(2026, 1, 1, 10, 0);
+    private static final LocalDateTime NEWER = LocalDateTime.of(2026, 1, 1, 11, 0);
+
+    @Autowired
+    private TopicService topicService;
+    @Autowired
+    private TopicJdbcTemplateRepository jdbcTopics;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private EntityManager entityManager;
+
+    private UUID topicId;
+    private UUID olderPost;
+    private UUID newerPost;
+
+    private void twoPosts() {
+        Topic topic = new Topic();
+        topic.setTitle("reply stats");
+        topicId = topicService.save(topic).getId();
+        olderPost = topicService.addPostToTopic(topicId, post()).getId();
+        newerPost = topicService.addPostToTopic(topicId, post()).getId();
+        entityManager.flush();
+        jdbc.update("UPDATE posts SET created_at = ? WHERE id = ?", OLDER, olderPost);
+        jdbc.update("UPDATE posts SET created_at = ? WHERE id = ?", NEWER, newerPost);
+        jdbc.update("UPDATE topics SET last_post_at = ?, reply_count = 2 WHERE id = ?", NEWER, topicId);
+        entityManager.clear();
+    }
+
+    private static Post post() {
+        Post post = new Post();
+        post.setTitle("title");
+        post.setContent("content");
+        return post;
+    }
+
+    private Map<String, Object> stats() {
+        return jdbc.queryForMap("SELECT reply_count, last_post_at FROM topics WHERE id = ?", topicId);
+    }
+
+    @Test
+    void deletingTheNewestPostMovesLastPostBack() {
+        twoPosts();
+
+        topicService.deletePostFromTopic(topicId, newerPost);
+
+        assertThat(stats().get("reply_count")).isEqualTo(1);
+        assertThat(jdbc.queryForObject("SELECT last_post_at FROM topics WHERE id = ?", LocalDateTime.class, topicId))
+                .isEqualTo(OLDER);
+    }
+
+    @Test
+    void movingTheNewestPostOutMovesLastPostBack() {
+        twoPosts();
+        Topic other = new Topic();
+        other.setTitle("elsewhere");
+        UUID otherId = topicService.save(other).getId();
+        entityManager.flush();
+        jdbc.update("UPDATE posts SET topic_id = ? WHERE id = ?", otherId, newerPost);
+
+        topicService.movePost(topicId, otherId, NEWER);
+
+        assertThat(stats().get("reply_count")).isEqualTo(1);
+        assertThat(jdbc.queryForObject("SELECT last_post_at FROM topics WHERE id = ?", LocalDateTime.class, topicId))
+                .isEqualTo(OLDER);
+    }
+
+    @Test
+    void jdbcRepositoryClearsLastPostWhenNoPostIsLeft() {
+        twoPosts();
+        jdbc.update("DELETE FROM posts WHERE topic_id = ?", topicId);
+
+        jdbcTopics.removeReply(topicId);
+        jdbcTopics.removeReply(topicId);
+
+        assertThat(stats().get("reply_count")).isEqualTo(0);
+        assertThat(stats().get("last_post_at")).isNull();
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.lab6.service.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.lab6.repository.PostPatch;
+import org.example.lab6.repository.PostPatch.Field;
+import org.example.lab6.service.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonPatchCompilerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_TITLE_LENGTH = 10;
+
+    private static PostPatch compile(String json) throws Exception {
+        JsonNode operations = MAPPER.readTree(json.replace('\'', '"'));
+        return JsonPatchCompiler.compile(operations, MAX_TITLE_LENGTH);
+    }
+
+    @Test
+    void addAndReplaceWriteColumns() throws Exception {
+        UUID topicId = UUID.randomUUID();
+        PostPatch patch = compile("[{'op':'add','path':'/title','value':'Hello'},"
+                + "{'op':'replace','path':'/topicId','value':'" + topicId + "'},"
+                + "{'op':'replace','path':'/likes','value':3}]");
+
+        assertThat(patch.values()).isEqualTo(Map.of(Field.TITLE, "Hello", Field.TOPIC_ID, topicId, Field.LIKES, 3));
+        assertThat(patch.expected()).isEmpty();
+    }
+
+    @Test
+    void removeDetachesTopicAndResetsLikes() throws Exception {
+        PostPatch patch = compile("[{'op':'remove','path':'/topicId'},{'op':'remove','path':'/likes'}]");
+
+        assertThat(patch.values()).containsEntry(Field.TOPIC_ID, null).containsEntry(Field.LIKES, 0);
+    }
+
+    @Test
+    void removingTextIsInvalid() {
+        assertThatThrownBy(() -> compile("[{'op':'remove','path':'/title'}]"))
+                .isInstanceOf(InvalidRequestException.class);
+    }
+
+    @Test
+    void testBecomesPreconditionWithoutWrites() throws Exception {
+        PostPatch patch = compile("[{'op':'test','path':'/likes','value':5}]");
+
+        assertThat(patch.values()).isEmpty();
+        assertThat(patch.expected()).isEqualTo(Map.of(Field.LIKES, 5));
+    }
+
+    @Test
+    void testAfterWriteIsDecidedAgainstTheWrittenValue() throws Exception {
+        PostPatch patch = compile("[{'op':'replace','path':'/title','value':'New'},"
+                + "{'op':'test','path':'/title','value':'New'}]");
+        assertThat(patch.expected()).isEmpty();
+
+        assertThatThrownBy(() -> compile("[{'op':'replace','path':'/title','value':'New'},"
+                + "{'op':'test','path':'/title','value':'Old'}]"))
+                .isInstanceOf(PatchConflictException.class);
+    }
+
+    @Test
+    void unknownPathIsInvalid() {
+        assertThatThrownBy(() -> compile("[{'op':'replace','path':'/authorId','value':'x'}]"))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("/authorId");
+    }
+
+    @Test
+    void unsupportedOperationIsInvalid() {
+        assertThatThrownBy(() -> compile("[{'op':'move','from':'/title','path':'/content'}]"))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("move");
+    }
+
+    @Test
+    void negativeLikesAreRejectedNotClamped() {
+        assertThatThrownBy(() -> compile("[{'op':'replace','path':'/likes','value':-1}]"))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("negative");
+    }
+
+    @Test
+    void overlongTitleIsInvalid() {
+        assertThatThrownBy(() -> compile("[{'op':'replace','path':'/title','value':'Eleven chars'}]"))
+                .isInstanceOf(InvalidRequestException.class);
+    }
+
+    @Test
+    void malformedTopicIdIsInvalid() {
+        assertThatThrownBy(() -> compile("[{'op':'replace','path':'/topicId','value':'not-a-uuid'}]"))
+                .isInstanceOf(InvalidRequestException.class);
+    }
+}
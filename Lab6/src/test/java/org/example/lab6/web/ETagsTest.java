@@ -0,0 +1,46 @@
+package org.example.lab6.web;
+
+import org.example.lab6.repository.Fingerprint;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ETagsTest {
+
+    @Test
+    void noPreconditionWithoutTagOrWithStar() {
+        assertThat(ETags.expectedVersion(null)).isNull();
+        assertThat(ETags.expectedVersion(" ")).isNull();
+        assertThat(ETags.expectedVersion("*")).isNull();
+    }
+
+    @Test
+    void readsTheVersionOfAnEntityTag() {
+        String etag = ETags.of(new Fingerprint(1, LocalDateTime.now(), 7, 12L), "id");
+
+        assertThat(etag).startsWith("\"12-");
+        assertThat(ETags.expectedVersion(etag)).isEqualTo(12L);
+    }
+
+    @Test
+    void acceptsSeveralTagsOfTheSameVersion() {
+        assertThat(ETags.expectedVersion("\"3-abc\", \"3-def\"")).isEqualTo(3L);
+    }
+
+    @Test
+    void rejectsTagsThatCanNeverMatch() {
+        for (String ifMatch : new String[]{
+                "W/\"3-abc\"",           // weak
+                "\"3-abc\", \"4-abc\"",  // two versions
+                "\"abc\"",               // a list tag, no version
+                "3-abc"}) {              // unquoted
+            assertThatThrownBy(() -> ETags.expectedVersion(ifMatch))
+                    .as(ifMatch)
+                    .isInstanceOf(OptimisticLockingFailureException.class);
+        }
+    }
+}
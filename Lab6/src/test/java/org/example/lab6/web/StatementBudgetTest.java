@@ -0,0 +1,58 @@
+package org.example.lab6.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// with forum.sql.statement-budget.fail=true the statement past the budget throws instead of being logged
+@SpringBootTest(properties = "forum.sql.statement-budget.fail=true")
+@AutoConfigureMockMvc
+@Import(StatementBudgetTest.BudgetedController.class)
+class StatementBudgetTest {
+
+    @RestController
+    static class BudgetedController {
+
+        private final JdbcTemplate jdbc;
+
+        BudgetedController(JdbcTemplate jdbc) {
+            this.jdbc = jdbc;
+        }
+
+        // an N+1 in miniature: the second statement is one over the budget
+        @GetMapping("/test/statement-budget/over")
+        @StatementBudget(1)
+        public int over() {
+            return jdbc.queryForObject("SELECT 1", Integer.class) + jdbc.queryForObject("SELECT 1", Integer.class);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void overBudgetHandlerFails() throws Exception {
+        mockMvc.perform(get("/test/statement-budget/over"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.title").value("Statement budget exceeded"));
+    }
+
+    @Test
+    void handlerWithinBudgetIsAnsweredNormally() throws Exception {
+        // PostApiController.getOne: one SELECT, budget 1
+        mockMvc.perform(get("/api/v1/posts/{id}", UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+    }
+}